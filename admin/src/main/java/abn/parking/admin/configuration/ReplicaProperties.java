@@ -0,0 +1,38 @@
+package abn.parking.admin.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "replica")
+@Getter
+@Setter
+public class ReplicaProperties {
+    /**
+     * Whether pages are read from the replica. Defaults to false (everything is read from the primary).
+     */
+    boolean enabled = false;
+
+    /**
+     * The JDBC url of the replica. The driver is the driver of the primary ({@code spring.datasource.driver-class-name}).
+     */
+    String url;
+
+    /**
+     * The username of the replica.
+     */
+    String username;
+
+    /**
+     * The password of the replica.
+     */
+    String password;
+
+    /**
+     * The time (in seconds) during which the pages of an administrator are read from the primary after they changed
+     * something, which must be longer than the replication lag. Defaults to 10.
+     */
+    int readYourWrites = 10;
+}
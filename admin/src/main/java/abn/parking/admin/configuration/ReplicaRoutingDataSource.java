@@ -0,0 +1,33 @@
+package abn.parking.admin.configuration;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Takes the connections of the requests which are read from the replica (see {@link ReplicaRoutingFilter}) from the
+ * replica, and all other connections from the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Boolean> REPLICA = ThreadLocal.withInitial(() -> false);
+
+    private enum Route {PRIMARY, REPLICA}
+
+    public ReplicaRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+        setDefaultTargetDataSource(primaryDataSource);
+    }
+
+    /**
+     * Sets whether the connections of the current thread are taken from the replica.
+     */
+    static void setReplica(boolean replica) {
+        REPLICA.set(replica);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return REPLICA.get() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
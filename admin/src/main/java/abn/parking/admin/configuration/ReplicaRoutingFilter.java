@@ -0,0 +1,46 @@
+package abn.parking.admin.configuration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Reads the pages (GET and HEAD requests) from the replica, and sends all changes (other requests) to the primary.
+ * After an administrator changed something, their pages are read from the primary during
+ * {@code replica.read-your-writes} seconds, so that they see their change before it was replicated.
+ */
+@RequiredArgsConstructor
+public class ReplicaRoutingFilter extends OncePerRequestFilter {
+    private static final String PRIMARY_UNTIL = ReplicaRoutingFilter.class.getName() + ".primaryUntil";
+
+    private final ReplicaProperties replicaProperties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        if (!read) {
+            request.getSession().setAttribute(PRIMARY_UNTIL, Instant.now().plusSeconds(replicaProperties.getReadYourWrites()));
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ReplicaRoutingDataSource.setReplica(!isPrimaryRequired(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setReplica(false);
+        }
+    }
+
+    private static boolean isPrimaryRequired(HttpServletRequest request) {
+        var session = request.getSession(false);
+        return session != null && session.getAttribute(PRIMARY_UNTIL) instanceof Instant until && until.isAfter(Instant.now());
+    }
+}
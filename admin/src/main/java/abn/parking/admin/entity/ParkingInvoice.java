@@ -39,6 +39,12 @@ public class ParkingInvoice {
     @JoinColumn(name = "observation_id")
     private VehicleObservation observation;
 
+    /**
+     * The license plate of the vehicle of the parking session or observation.
+     */
+    @Column(name = "license", nullable = false)
+    private String license;
+
     /**
      * The date and time at which the parking invoice was created.
      */
@@ -57,4 +63,10 @@ public class ParkingInvoice {
      */
     @Column(name = "paid", nullable = false)
     private Boolean paid;
+
+    /**
+     * The date and time at which the invoice was paid (if it has been paid).
+     */
+    @Column(name = "paid_instant")
+    private Instant paidInstant;
 }
@@ -0,0 +1,95 @@
+package abn.parking.admin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.Immutable;
+import tech.ailef.snapadmin.external.annotations.DisableCreate;
+import tech.ailef.snapadmin.external.annotations.DisableDelete;
+import tech.ailef.snapadmin.external.annotations.DisableEdit;
+
+import java.time.LocalDate;
+
+/**
+ * Entity class for street daily rollups.
+ * <p>
+ * Represents the revenue, fines, payments and sessions of a street on a day (UTC), which are kept up to date by the
+ * core application, so that reports can be made without scanning the parking invoices and sessions.
+ */
+@Data
+@Entity(name = "street_daily_rollup")
+@Immutable
+@DisableCreate
+@DisableEdit
+@DisableDelete
+public class StreetDailyRollup {
+    @Id
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * The street of the invoices and sessions.
+     */
+    @Column(name = "street", nullable = false)
+    private String street;
+
+    /**
+     * The day of the invoices (and of their payments) and on which the sessions were stopped.
+     */
+    @Column(name = "rollup_day", nullable = false)
+    private LocalDate day;
+
+    /**
+     * The number of invoices (of sessions and fines) which were created on the day.
+     */
+    @Column(name = "invoice_count", nullable = false)
+    private Long invoiceCount;
+
+    /**
+     * The revenue (cents), which is the sum of the amounts of the invoices which were created on the day.
+     */
+    @Column(name = "invoice_amount", nullable = false)
+    private Long invoiceAmount;
+
+    /**
+     * The number of fines which were issued on the day.
+     */
+    @Column(name = "fine_count", nullable = false)
+    private Long fineCount;
+
+    /**
+     * The sum of the amounts (cents) of the fines which were issued on the day.
+     */
+    @Column(name = "fine_amount", nullable = false)
+    private Long fineAmount;
+
+    /**
+     * The number of invoices of the day which have been paid.
+     */
+    @Column(name = "paid_count", nullable = false)
+    private Long paidCount;
+
+    /**
+     * The sum of the amounts (cents) of the invoices of the day which have been paid.
+     */
+    @Column(name = "paid_amount", nullable = false)
+    private Long paidAmount;
+
+    /**
+     * The part of the invoices of the day which has been paid (between 0 and 1).
+     */
+    @Formula("case when invoice_count = 0 then null else cast(paid_count as double precision) / invoice_count end")
+    private Double paidRatio;
+
+    /**
+     * The number of sessions which were stopped on the day.
+     */
+    @Column(name = "session_count", nullable = false)
+    private Long sessionCount;
+
+    /**
+     * The total duration (in minutes) of the sessions which were stopped on the day.
+     */
+    @Column(name = "session_minutes", nullable = false)
+    private Long sessionMinutes;
+}
@@ -0,0 +1,18 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "database.bulkhead")
+@Getter
+@Setter
+public class DatabaseBulkheadProperties {
+    /**
+     * The maximum time (in milliseconds) which a thread waits for a database connection in virtual thread mode, after
+     * which getting the connection fails. Defaults to 30000 (like the connection timeout of the pool).
+     */
+    long timeout = 30000;
+}
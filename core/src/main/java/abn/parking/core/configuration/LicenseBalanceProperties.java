@@ -0,0 +1,25 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "invoices.balance")
+@Getter
+@Setter
+public class LicenseBalanceProperties {
+    /**
+     * The maximum number of license balances which are kept in memory, after which the expired balances (and then
+     * arbitrary balances) are evicted. Defaults to 10000.
+     */
+    int cacheSize = 10_000;
+
+    /**
+     * The time (in seconds) for which a balance is kept in memory. Balances are evicted right away when invoices are
+     * created or paid on the same node, so this is the maximum time for which changes made on other nodes (or in the
+     * admin application) are not seen. Defaults to 5.
+     */
+    long cacheTtl = 5;
+}
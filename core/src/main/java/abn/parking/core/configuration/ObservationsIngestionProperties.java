@@ -0,0 +1,73 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "observations.ingestion")
+@Getter
+@Setter
+public class ObservationsIngestionProperties {
+    /**
+     * The way in which observations added with POST /observations are written to the database. Defaults to synchronous.
+     */
+    IngestionMode mode = IngestionMode.SYNC;
+
+    /**
+     * The maximum number of observations which can wait in the queue (in asynchronous mode). Defaults to 100000.
+     */
+    int queueCapacity = 100_000;
+
+    /**
+     * The maximum number of observations which are written to the database in a single transaction (in asynchronous
+     * mode). Defaults to 5000.
+     */
+    int batchSize = 5000;
+
+    /**
+     * The time (in milliseconds) which the writer waits for more observations to fill up a batch, after it took the
+     * first observations from the queue (in asynchronous mode). Defaults to 100.
+     */
+    int linger = 100;
+
+    /**
+     * The number of seconds after which a client may retry adding observations when the queue is full (in asynchronous
+     * mode). Defaults to 5.
+     */
+    int retryAfter = 5;
+
+    /**
+     * The number of times the writer tries to write a batch of observations before the observations are dropped (in
+     * asynchronous mode). Observations which are rejected by the database are dropped right away. Defaults to 10.
+     */
+    int maxAttempts = 10;
+
+    /**
+     * Whether observations added with POST /observations (in synchronous mode) are verified right away, against an
+     * in-memory index of the sessions. Observations which can not be verified with the index are left for the scheduled
+     * task. Requires that all sessions are started and stopped on this node. Defaults to false.
+     */
+    boolean inlineVerification = false;
+
+    /**
+     * The time (in minutes) for which stopped sessions are kept in the index of sessions (with inline verification).
+     * Older observations are left for the scheduled task. Defaults to 60.
+     */
+    int sessionRetention = 60;
+
+    public enum IngestionMode {
+        /**
+         * Observations are written to the database before the response is sent.
+         */
+        SYNC,
+
+        /**
+         * Observations are added to an in-memory queue and the response is sent right away, a background writer writes
+         * the observations in the queue to the database in large batches. Observations which are still in the queue
+         * when the application crashes are lost.
+         */
+        ASYNC
+    }
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
 @Configuration
 @ConfigurationProperties(prefix = "observations.process")
 @Getter
@@ -14,4 +17,46 @@ public class ObservationsProcessProperties {
      * The interval (in minutes) which defines how often the fine task to run. Defaults to 5.
      */
     int interval = 1;
+
+    /**
+     * The way in which observations are verified. Defaults to set-based verification.
+     */
+    VerificationMode mode = VerificationMode.SET;
+
+    /**
+     * The maximum number of observations which are verified in a single transaction. Defaults to 1000.
+     */
+    int chunkSize = 1000;
+
+    /**
+     * The number of workers which verify observations in parallel on this node. Every worker claims its own chunks of
+     * observations, so workers (on this node and on other nodes) never verify the same observations. Defaults to 1.
+     */
+    int workers = 1;
+
+    /**
+     * The id of this node, which needs to be unique for every node verifying observations. It is used to keep track of
+     * the progress of the workers of this node. Defaults to the host name.
+     */
+    String nodeId = defaultNodeId();
+
+    public enum VerificationMode {
+        /**
+         * Every observation is verified on its own, by looking up the session for the observation.
+         */
+        ROW,
+
+        /**
+         * All observations are verified together, with a few statements which work on all unverified observations.
+         */
+        SET
+    }
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "parking.rates")
+@Getter
+@Setter
+public class ParkingRatesProperties {
+    /**
+     * The interval (in seconds) which defines how often the parking rates are checked for changes. Defaults to 10.
+     */
+    int refreshInterval = 10;
+}
@@ -2,10 +2,20 @@ package abn.parking.core.configuration;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Configuration
 @ConfigurationProperties(prefix = "parking.schedule")
 @Getter
@@ -22,10 +32,25 @@ public class ParkingScheduleProperties {
      */
     ScheduleTime endTime = new ScheduleTime(21, 0);
 
+    /**
+     * The days of the week on which parking will be billed. Defaults to every day except Sunday.
+     */
+    Set<DayOfWeek> chargeableDays = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY);
+
+    /**
+     * The dates on which parking will not be billed on any street (in the zone of the parking schedule).
+     */
+    List<LocalDate> holidays = new ArrayList<>();
+
+    /**
+     * The schedules of streets which are billed differently from the schedule above (by street name).
+     */
+    Map<String, StreetSchedule> streets = new HashMap<>();
+
     /**
      * The zone id to use for the parking schedule. Defaults to Europe/Amsterdam.
      */
-    String zoneId;
+    String zoneId = "Europe/Amsterdam";
 
     @AllArgsConstructor
     @Getter
@@ -41,4 +66,25 @@ public class ParkingScheduleProperties {
          */
         Integer minute;
     }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class StreetSchedule {
+        /**
+         * The start time, from when parking will be billed every day on the street. Defaults to the start time above.
+         */
+        ScheduleTime startTime;
+
+        /**
+         * The end time, until when parking will be billed every day on the street. Defaults to the end time above.
+         */
+        ScheduleTime endTime;
+
+        /**
+         * The days of the week on which parking will be billed on the street. Defaults to the chargeable days above.
+         */
+        Set<DayOfWeek> chargeableDays;
+    }
 }
@@ -0,0 +1,32 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "partitioning")
+@Getter
+@Setter
+public class PartitioningProperties {
+    /**
+     * The interval (in hours) which defines how often the monthly partitions of the vehicle_observation and
+     * parking_session tables are maintained (on Postgres). Defaults to 24.
+     */
+    int maintenanceInterval = 24;
+
+    /**
+     * The number of months after the current month for which partitions are created in advance. Defaults to 3.
+     */
+    int monthsAhead = 3;
+
+    /**
+     * The number of months before the current month of which the partitions are kept attached, after which they are
+     * detached (but not dropped). Observations and sessions in detached partitions are no longer found by the
+     * application, so the invoices of those observations and sessions are returned without them. Partitions which
+     * still contain unverified observations or open sessions are never detached. Defaults to 0, which never detaches
+     * partitions.
+     */
+    int retentionMonths = 0;
+}
@@ -0,0 +1,21 @@
+package abn.parking.core.configuration;
+
+import abn.parking.core.replay.ReplayClock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Replaces the clock of the system by a {@link ReplayClock} when recorded events are replayed
+ * ({@code replay.enabled=true}).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replay", name = "enabled", havingValue = "true")
+public class ReplayConfiguration {
+    @Bean
+    @Primary
+    public ReplayClock replayClock() {
+        return new ReplayClock();
+    }
+}
@@ -0,0 +1,30 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "replay")
+@Getter
+@Setter
+public class ReplayProperties {
+    /**
+     * Whether the application replays recorded events (see {@link abn.parking.core.replay.ReplayApplication}), in which
+     * case the clock is the time of the replayed events. Defaults to false.
+     */
+    boolean enabled = false;
+
+    /**
+     * The file with the recorded events to replay.
+     */
+    String file;
+
+    /**
+     * The interval (in minutes of replayed time) which defines how often the observations are verified during the
+     * replay, like {@code observations.process.interval} does in production. The observations are verified once more
+     * after the last event. Defaults to 1.
+     */
+    int verificationInterval = 1;
+}
@@ -0,0 +1,32 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "replica")
+@Getter
+@Setter
+public class ReplicaProperties {
+    /**
+     * Whether read-only transactions are sent to the replica. Defaults to false (everything is sent to the primary).
+     */
+    boolean enabled = false;
+
+    /**
+     * The JDBC url of the replica. The driver is the driver of the primary ({@code spring.datasource.driver-class-name}).
+     */
+    String url;
+
+    /**
+     * The username of the replica.
+     */
+    String username;
+
+    /**
+     * The password of the replica.
+     */
+    String password;
+}
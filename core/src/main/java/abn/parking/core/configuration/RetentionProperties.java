@@ -0,0 +1,43 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "retention")
+@Getter
+@Setter
+public class RetentionProperties {
+    /**
+     * Whether verified observations and old sessions are moved to the archive tables. Defaults to false.
+     */
+    boolean enabled = false;
+
+    /**
+     * The interval (in minutes) which defines how often the retention job runs. Defaults to 60.
+     */
+    int interval = 60;
+
+    /**
+     * The maximum number of rows which are moved to an archive table in a single transaction. Defaults to 500.
+     */
+    int batchSize = 500;
+
+    /**
+     * The pause (in milliseconds) after every batch, which limits the load of the retention job on the database.
+     * Defaults to 100.
+     */
+    int pause = 100;
+
+    /**
+     * The number of days after which verified observations without a fine are archived. Defaults to 1.
+     */
+    int observationRetentionDays = 1;
+
+    /**
+     * The number of days after which stopped sessions without an invoice are archived. Defaults to 30.
+     */
+    int sessionRetentionDays = 30;
+}
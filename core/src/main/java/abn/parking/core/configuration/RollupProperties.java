@@ -0,0 +1,43 @@
+package abn.parking.core.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "rollup")
+@Getter
+@Setter
+public class RollupProperties {
+    /**
+     * Whether the street daily rollups are updated. Defaults to false.
+     */
+    boolean enabled = false;
+
+    /**
+     * The interval (in minutes) which defines how often the rollups are updated. Defaults to 5.
+     */
+    int interval = 5;
+
+    /**
+     * The time (in seconds) which invoices, payments and sessions must be old before they are added to the rollups, so
+     * that rows of transactions which were still running when the rollups were updated are not skipped. Must be longer
+     * than the write timeout. Defaults to 300.
+     */
+    int lag = 300;
+
+    /**
+     * The timeout (in seconds) of the transactions which stop sessions, pay invoices and add observations (with their
+     * fines), so that their rows are never older than the lag when they become visible. The other writes of the rows
+     * which are rolled up are short by themselves: observations are verified in chunks, and streamed payments pay
+     * their invoices right before they commit. Defaults to 60.
+     */
+    int writeTimeout = 60;
+
+    /**
+     * The maximum period (in hours) of invoices, payments and sessions which is added to the rollups in a single
+     * transaction. Defaults to 24.
+     */
+    int window = 24;
+}
@@ -0,0 +1,22 @@
+package abn.parking.core.configuration;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class VerificationExecutorConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService verificationExecutor(ObservationsProcessProperties observationsProcessProperties, Environment environment) {
+        var threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("verification-", 1).factory()
+                : new CustomizableThreadFactory("verification-");
+        return Executors.newFixedThreadPool(observationsProcessProperties.getWorkers(), threadFactory);
+    }
+}
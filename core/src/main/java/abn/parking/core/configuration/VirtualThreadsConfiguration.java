@@ -0,0 +1,38 @@
+package abn.parking.core.configuration;
+
+import abn.parking.core.datasource.BulkheadDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts a {@link BulkheadDataSource} in front of every connection pool when virtual threads are enabled
+ * ({@code spring.threads.virtual.enabled=true}), which allows as many connections to be used at the same time as the
+ * maximum size of the pool.
+ * <p>
+ * Spring Boot itself runs the requests (Tomcat) and the scheduled tasks on virtual threads in this mode, and so do the
+ * verification workers (see {@link VerificationExecutorConfiguration}) and the writer of asynchronously ingested
+ * observations.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfiguration {
+
+    // static, as it post-processes the beans of the other configurations
+    @Bean
+    public static BeanPostProcessor databaseBulkheadPostProcessor(ObjectProvider<DatabaseBulkheadProperties> databaseBulkheadProperties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource pool) {
+                    return new BulkheadDataSource(pool, pool.getMaximumPoolSize(), databaseBulkheadProperties.getObject().getTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+}
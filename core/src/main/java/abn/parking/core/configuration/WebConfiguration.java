@@ -0,0 +1,16 @@
+package abn.parking.core.configuration;
+
+import abn.parking.core.dto.InvoiceSource;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    // enum query parameters are given by their value in the API specification (e.g. "session"), not by their name
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, InvoiceSource.class, InvoiceSource::fromValue);
+    }
+}
@@ -0,0 +1,31 @@
+package abn.parking.core.controller;
+
+import java.util.Arrays;
+
+/**
+ * Creates strong ETags from versions, and matches them with the ETags in If-None-Match request headers.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Whether the If-None-Match header (a list of ETags, or *) contains the ETag. Weak ETags match their strong
+     * equivalent, as If-None-Match uses the weak comparison.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::strip)
+                .map(candidate -> candidate.startsWith("W/") ? candidate.substring(2) : candidate)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(etag));
+    }
+}
@@ -1,9 +1,15 @@
 package abn.parking.core.controller;
 
 import abn.parking.core.api.InvoicesApi;
+import abn.parking.core.datasource.ReadYourWrites;
+import abn.parking.core.dto.GetInvoicesBalanceResponse;
 import abn.parking.core.dto.GetInvoicesResponse;
+import abn.parking.core.dto.PayInvoicesRequest;
+import abn.parking.core.dto.PayInvoicesResponse;
 import abn.parking.core.service.InvoicesService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 
@@ -12,10 +18,27 @@ import org.springframework.stereotype.Controller;
 public class InvoicesController implements InvoicesApi {
 
     private final InvoicesService invoicesService;
+    private final ReadYourWrites readYourWrites;
 
     @Override
-    public ResponseEntity<GetInvoicesResponse> getInvoices(String license) {
-        var response = invoicesService.getInvoices(license);
+    public ResponseEntity<GetInvoicesResponse> getInvoices(String license, String ifNoneMatch) {
+        // the invoices are read from the primary when the replica has not replicated their latest changes yet
+        return readYourWrites.read(license, () -> {
+            // the version is read before the invoices, so that the ETag is never newer than the invoices in the response
+            var etag = ETags.of(invoicesService.getInvoicesVersion(license));
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            var response = invoicesService.getInvoices(license);
+
+            return ResponseEntity.ok().eTag(etag).body(response);
+        });
+    }
+
+    @Override
+    public ResponseEntity<GetInvoicesBalanceResponse> getInvoicesBalance(String license) {
+        var response = invoicesService.getInvoicesBalance(license);
 
         return ResponseEntity.ok(response);
     }
@@ -26,4 +49,18 @@ public class InvoicesController implements InvoicesApi {
 
         return ResponseEntity.ok().build();
     }
+
+    @Override
+    public ResponseEntity<PayInvoicesResponse> payInvoices(PayInvoicesRequest payInvoicesRequest) {
+        var response = invoicesService.payInvoices(payInvoicesRequest.getInvoiceIds());
+
+        return ResponseEntity.ok(response);
+    }
+
+    @Override
+    public ResponseEntity<PayInvoicesResponse> streamPayInvoices(InputStreamResource body) {
+        var response = invoicesService.streamPayInvoices(body);
+
+        return ResponseEntity.ok(response);
+    }
 }
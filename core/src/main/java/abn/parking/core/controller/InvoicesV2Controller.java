@@ -0,0 +1,39 @@
+package abn.parking.core.controller;
+
+import abn.parking.core.api.V2Api;
+import abn.parking.core.datasource.ReadYourWrites;
+import abn.parking.core.dto.GetInvoicesPageResponse;
+import abn.parking.core.dto.InvoiceSource;
+import abn.parking.core.service.InvoicesService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+
+import java.time.Instant;
+
+@Controller
+@RequiredArgsConstructor
+public class InvoicesV2Controller implements V2Api {
+
+    private final InvoicesService invoicesService;
+    private final ReadYourWrites readYourWrites;
+
+    @Override
+    public ResponseEntity<GetInvoicesPageResponse> getInvoicesPage(String license, Boolean paid, Instant from, Instant to,
+                                                                   InvoiceSource source, Integer limit, String cursor,
+                                                                   String ifNoneMatch) {
+        // the invoices are read from the primary when the replica has not replicated their latest changes yet
+        return readYourWrites.read(license, () -> {
+            // the version is read before the invoices, so that the ETag is never newer than the invoices in the response
+            var etag = ETags.of(invoicesService.getInvoicesVersion(license));
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            var response = invoicesService.getInvoicesPage(license, paid, from, to, source, limit, cursor);
+
+            return ResponseEntity.ok().eTag(etag).body(response);
+        });
+    }
+}
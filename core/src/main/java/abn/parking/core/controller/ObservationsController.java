@@ -1,22 +1,45 @@
 package abn.parking.core.controller;
 
 import abn.parking.core.api.ObservationsApi;
+import abn.parking.core.configuration.ObservationsIngestionProperties;
+import abn.parking.core.configuration.ObservationsIngestionProperties.IngestionMode;
 import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.dto.StreamObservationsResponse;
 import abn.parking.core.service.ObservationsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 @Controller
 @RequiredArgsConstructor
 public class ObservationsController implements ObservationsApi {
 
     private final ObservationsService observationsService;
+    private final ObservationsIngestionProperties observationsIngestionProperties;
 
     @Override
     public ResponseEntity<Void> addObservations(AddObservationsRequest addObservationsRequest) {
+        if (observationsIngestionProperties.getMode() == IngestionMode.ASYNC) {
+            observationsService.enqueueObservations(addObservationsRequest);
+
+            return ResponseEntity.accepted().build();
+        }
+
         observationsService.addObservations(addObservationsRequest);
 
         return ResponseEntity.ok().build();
     }
+
+    @Override
+    public ResponseEntity<StreamObservationsResponse> streamObservations(InputStreamResource body) {
+        // the generated interface doesn't pass the content type, so it is taken from the current request
+        var request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+        var count = observationsService.streamObservations(body, MediaType.parseMediaType(request.getContentType()));
+
+        return ResponseEntity.ok(new StreamObservationsResponse(count));
+    }
 }
@@ -0,0 +1,50 @@
+package abn.parking.core.datasource;
+
+import abn.parking.core.configuration.ReplicaProperties;
+import abn.parking.core.repository.LicenseBalanceRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Reads the invoices of a license from the primary when the replica has not replicated all changes of the invoices of
+ * the license yet. The version of the balance of the license (which changes whenever an invoice of the license is
+ * created or paid, on any node) is read from both the primary and the replica, and the invoices are only read from the
+ * replica when it has the version of the primary.
+ */
+@Component
+public class ReadYourWrites {
+    private final ReplicaProperties replicaProperties;
+    private final LicenseBalanceRepository licenseBalanceRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public ReadYourWrites(ReplicaProperties replicaProperties, LicenseBalanceRepository licenseBalanceRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.replicaProperties = replicaProperties;
+        this.licenseBalanceRepository = licenseBalanceRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Runs the read of the invoices of the license, on the primary if the replica is behind on the invoices of the
+     * license. The replica only moves forward, so the read sees at least the version which was checked.
+     */
+    public <T> T read(String license, Supplier<T> read) {
+        if (!replicaProperties.isEnabled() || license == null) {
+            return read.get();
+        }
+
+        var primaryVersion = ReplicaRoutingDataSource.usePrimary(() -> findVersion(license));
+        if (findVersion(license) >= primaryVersion) {
+            return read.get();
+        }
+        return ReplicaRoutingDataSource.usePrimary(read);
+    }
+
+    private long findVersion(String license) {
+        return readOnlyTransactionTemplate.execute(status -> licenseBalanceRepository.findVersion(license).orElse(0L));
+    }
+}
@@ -0,0 +1,51 @@
+package abn.parking.core.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Entity class for license balances.
+ * <p>
+ * The outstanding balance of the parking invoices (see {@link ParkingInvoice}) of a license, which is updated whenever
+ * an invoice of the license is created, changed or deleted. Only read through JPA, the balances are kept up to date by
+ * triggers on the invoices.
+ */
+@Data
+@Entity(name = "license_balance")
+public class LicenseBalance {
+    /**
+     * The license plate of the vehicle.
+     */
+    @Id
+    @Column(name = "license")
+    private String license;
+
+    /**
+     * The sum of the amounts (cents) of the unpaid invoices of the license.
+     */
+    @Column(name = "open_balance", nullable = false)
+    private Long openBalance;
+
+    /**
+     * The number of unpaid invoices of the license.
+     */
+    @Column(name = "unpaid_count", nullable = false)
+    private Long unpaidCount;
+
+    /**
+     * The date and time at which the latest invoice (paid or unpaid) of the license was created.
+     */
+    @Column(name = "latest_invoice_instant")
+    private Instant latestInvoiceInstant;
+
+    /**
+     * The version of the balance, which is incremented whenever an invoice of the license is created, changed or
+     * deleted.
+     */
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
@@ -0,0 +1,45 @@
+package abn.parking.core.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Entity class for open parking sessions.
+ * <p>
+ * The open parking session (see {@link ParkingSession}) of a license, which is added when the session is started and
+ * removed when it is stopped. A license can only have one open session. As it holds the start instant of the session,
+ * the session can be looked up in its own partition of the parking sessions (on Postgres). Only read through JPA, the
+ * open sessions are kept up to date by a trigger on the parking sessions, for every write of a session.
+ */
+@Data
+@Entity(name = "parking_session_open")
+public class OpenParkingSession {
+    /**
+     * The license plate of the vehicle that is parked.
+     */
+    @Id
+    @Column(name = "license")
+    private String license;
+
+    /**
+     * The id of the open session.
+     */
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    /**
+     * The street where the vehicle is parked.
+     */
+    @Column(name = "street", nullable = false)
+    private String street;
+
+    /**
+     * The time when the driver started the open session.
+     */
+    @Column(name = "start_instant", nullable = false)
+    private Instant startInstant;
+}
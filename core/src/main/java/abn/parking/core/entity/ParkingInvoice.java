@@ -33,6 +33,13 @@ public class ParkingInvoice {
     @JoinColumn(name = "observation_id")
     private VehicleObservation observation;
 
+    /**
+     * The license plate of the vehicle of the parking session or observation, which is copied to the invoice so that
+     * the invoices of a vehicle can be found without joining the sessions and observations.
+     */
+    @Column(name = "license", nullable = false)
+    private String license;
+
     /**
      * The date and time at which the parking invoice was created.
      */
@@ -51,4 +58,10 @@ public class ParkingInvoice {
      */
     @Column(name = "paid", nullable = false)
     private Boolean paid;
+
+    /**
+     * The date and time at which the invoice was paid (if it has been paid).
+     */
+    @Column(name = "paid_instant")
+    private Instant paidInstant;
 }
@@ -33,4 +33,12 @@ public class ParkingRate {
      */
     @Column(name = "fine_rate", nullable = false)
     private Integer fineRate;
+
+    /**
+     * The version of the parking rate, which is incremented every time the parking rate is changed. This is used by the
+     * core application to detect changed parking rates.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
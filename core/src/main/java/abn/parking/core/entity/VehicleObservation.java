@@ -17,8 +17,13 @@ import java.time.Instant;
 @Data
 @Entity(name = "vehicle_observation")
 public class VehicleObservation {
+    /**
+     * Ids are allocated from a sequence in blocks of 50, instead of being generated by the database on insert, so that
+     * Hibernate knows the ids before inserting and can insert observations in JDBC batches.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vehicle_observation_id_seq")
+    @SequenceGenerator(name = "vehicle_observation_id_seq", sequenceName = "vehicle_observation_id_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -0,0 +1,29 @@
+package abn.parking.core.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+/**
+ * Entity class for verification checkpoints.
+ * <p>
+ * Records the id of the last vehicle observation (see {@link VehicleObservation}) which was verified by a running
+ * verification task, so that a verification task which was interrupted can continue where it stopped.
+ */
+@Data
+@Entity(name = "verification_checkpoint")
+public class VerificationCheckpoint {
+    /**
+     * The name of the verification task which the checkpoint belongs to.
+     */
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    /**
+     * The id of the last vehicle observation which was verified by the verification task.
+     */
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+}
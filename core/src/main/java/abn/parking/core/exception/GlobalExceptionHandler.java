@@ -1,7 +1,11 @@
 package abn.parking.core.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -18,4 +22,50 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         log.warn("Resource not found | URI = {}", request.getRequestURI());
         return ResponseEntity.notFound().build();
     }
+
+    @ExceptionHandler(SessionAlreadyOpenException.class)
+    public ResponseEntity<Object> handleSessionAlreadyOpenException(HttpServletRequest request, SessionAlreadyOpenException e) {
+        log.warn("Session already open | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage()));
+    }
+
+    // e.g. a query parameter outside of the range in the API specification
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Object> handleConstraintViolationException(HttpServletRequest request, ConstraintViolationException e) {
+        log.warn("Constraint violation | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidObservationException.class)
+    public ResponseEntity<Object> handleInvalidObservationException(HttpServletRequest request, InvalidObservationException e) {
+        log.warn("Invalid observation | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidInvoiceIdException.class)
+    public ResponseEntity<Object> handleInvalidInvoiceIdException(HttpServletRequest request, InvalidInvoiceIdException e) {
+        log.warn("Invalid invoice id | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Object> handleInvalidCursorException(HttpServletRequest request, InvalidCursorException e) {
+        log.warn("Invalid cursor | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @ExceptionHandler(ObservationsQueueFullException.class)
+    public ResponseEntity<Object> handleObservationsQueueFullException(HttpServletRequest request, ObservationsQueueFullException e) {
+        log.warn("Observations queue is full | URI = {}", request.getRequestURI());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .build();
+    }
+
+    @ExceptionHandler(ObservationsTooLargeException.class)
+    public ResponseEntity<Object> handleObservationsTooLargeException(HttpServletRequest request, ObservationsTooLargeException e) {
+        log.warn("Too many observations for the queue | URI = {} | Message = {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage()));
+    }
 }
@@ -0,0 +1,11 @@
+package abn.parking.core.exception;
+
+/**
+ * Thrown when a cursor for a page of results can not be read, for example because it was not returned by the API.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor, Throwable cause) {
+        super("Cursor is not valid: " + cursor, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package abn.parking.core.exception;
+
+/**
+ * Thrown when a line in an uploaded stream of invoice ids is not an invoice id.
+ */
+public class InvalidInvoiceIdException extends RuntimeException {
+
+    public InvalidInvoiceIdException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,15 @@
+package abn.parking.core.exception;
+
+/**
+ * Thrown when an observation in an uploaded stream of observations can not be read, or is incomplete.
+ */
+public class InvalidObservationException extends RuntimeException {
+
+    public InvalidObservationException(String message) {
+        super(message);
+    }
+
+    public InvalidObservationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package abn.parking.core.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when observations can not be added to the queue of observations waiting to be written, because the queue is
+ * full.
+ */
+@Getter
+public class ObservationsQueueFullException extends RuntimeException {
+    /**
+     * The number of seconds after which the client may try again.
+     */
+    private final int retryAfter;
+
+    public ObservationsQueueFullException(int retryAfter) {
+        super("Observations queue is full");
+        this.retryAfter = retryAfter;
+    }
+}
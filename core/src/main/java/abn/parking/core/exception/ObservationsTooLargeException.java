@@ -0,0 +1,20 @@
+package abn.parking.core.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when observations can not be added to the queue of observations waiting to be written, because there are
+ * more observations than the queue can hold, even when it is empty. Retrying the same request will not help.
+ */
+@Getter
+public class ObservationsTooLargeException extends RuntimeException {
+    /**
+     * The maximum number of observations which can be added at once.
+     */
+    private final int queueCapacity;
+
+    public ObservationsTooLargeException(int queueCapacity) {
+        super("No more than %d observations can be added at once".formatted(queueCapacity));
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,11 @@
+package abn.parking.core.exception;
+
+/**
+ * Thrown when a session is started for a license which already has an open session.
+ */
+public class SessionAlreadyOpenException extends RuntimeException {
+
+    public SessionAlreadyOpenException(String license, Throwable cause) {
+        super("License %s already has an open session".formatted(license), cause);
+    }
+}
@@ -0,0 +1,65 @@
+package abn.parking.core.partition;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * The monthly partitions of a table which is partitioned by range on a timestamp column. The partition of a month is
+ * named after the table and the month (e.g. vehicle_observation_2024_01), and covers the month in UTC.
+ *
+ * @param table the name of the partitioned table
+ */
+public record MonthlyPartitions(String table) {
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("uuuu_MM");
+
+    /**
+     * The name of the partition of the month.
+     */
+    public String name(YearMonth month) {
+        return table + "_" + month.format(MONTH_FORMAT);
+    }
+
+    /**
+     * The month of the partition with the given name, or empty if the partition is not a monthly partition of the table
+     * (like the default partition).
+     */
+    public Optional<YearMonth> monthOf(String partition) {
+        if (!partition.startsWith(table + "_")) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(YearMonth.parse(partition.substring(table.length() + 1), MONTH_FORMAT));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The statement which creates the partition of the month, if it does not exist yet.
+     */
+    public String createStatement(YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')".formatted(name(month), table,
+                month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant(), month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    /**
+     * The months for which partitions should exist: the current month and the given number of months after it.
+     */
+    public static List<YearMonth> monthsToCreate(YearMonth currentMonth, int monthsAhead) {
+        return IntStream.rangeClosed(0, monthsAhead).mapToObj(currentMonth::plusMonths).toList();
+    }
+
+    /**
+     * Whether the partition of the month should be detached, which is when it ended more than the given number of
+     * months before the current month. A retention of 0 months never detaches partitions.
+     */
+    public static boolean isExpired(YearMonth month, YearMonth currentMonth, int retentionMonths) {
+        return retentionMonths > 0 && month.isBefore(currentMonth.minusMonths(retentionMonths));
+    }
+}
@@ -0,0 +1,154 @@
+package abn.parking.core.partition;
+
+import abn.parking.core.configuration.PartitioningProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains the monthly partitions of the vehicle_observation and parking_session tables, which are only partitioned on
+ * Postgres (on other databases nothing is maintained).
+ * <p>
+ * Partitions are created for the current month and {@code partitioning.months-ahead} months after it, so that rows
+ * never have to be written to the default partition. Partitions of months more than
+ * {@code partitioning.retention-months} months ago are detached, after which they can be archived or dropped.
+ * Every statement is committed on its own, so a statement which fails (e.g. because a partition overlaps the legacy
+ * partition) doesn't keep the other partitions from being maintained. Only one node maintains the partitions at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionMaintenance {
+    // the key of the advisory lock which is held by the node which maintains the partitions
+    private static final long LOCK_KEY = 0x7061727469L;
+    private static final String PARTITIONS_SQL = """
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = to_regclass(?)""";
+    private static final List<PartitionedTable> TABLES = List.of(
+            new PartitionedTable(new MonthlyPartitions("vehicle_observation"), "verified = false"),
+            new PartitionedTable(new MonthlyPartitions("parking_session"), "end_instant IS NULL"));
+
+    private final Clock clock;
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitioningProperties partitioningProperties;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${partitioning.maintenance-interval}", timeUnit = TimeUnit.HOURS)
+    public void maintainPartitions() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (connection.isWrapperFor(PGConnection.class) && tryLock(connection)) {
+                try {
+                    TABLES.forEach(table -> maintainPartitions(connection, table));
+                } finally {
+                    unlock(connection);
+                }
+            }
+            return null;
+        });
+    }
+
+    private void maintainPartitions(Connection connection, PartitionedTable table) {
+        var partitions = table.partitions();
+        var currentMonth = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+        var existing = findPartitions(connection, partitions.table());
+        if (existing.isEmpty()) {
+            // the table is not partitioned
+            return;
+        }
+
+        var created = MonthlyPartitions.monthsToCreate(currentMonth, partitioningProperties.getMonthsAhead()).stream()
+                .filter(month -> !existing.contains(partitions.name(month)))
+                .filter(month -> execute(connection, partitions.createStatement(month)))
+                .count();
+
+        var detached = existing.stream()
+                .filter(partition -> partitions.monthOf(partition)
+                        .filter(month -> MonthlyPartitions.isExpired(month, currentMonth, partitioningProperties.getRetentionMonths()))
+                        .isPresent())
+                .filter(partition -> !isInUse(connection, partition, table.inUseCondition()))
+                .filter(partition -> execute(connection, "ALTER TABLE %s DETACH PARTITION %s".formatted(partitions.table(), partition)))
+                .count();
+
+        log.info("Maintained partitions | Table = {} | Created = {} | Detached = {}", partitions.table(), created, detached);
+    }
+
+    // Partitions which still contain rows which are in use (unverified observations or open sessions) are kept.
+    private boolean isInUse(Connection connection, String partition, String inUseCondition) {
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM %s WHERE %s)".formatted(partition, inUseCondition))) {
+            resultSet.next();
+            if (resultSet.getBoolean(1)) {
+                log.warn("Partition is expired but still in use, not detached | Partition = {}", partition);
+                return true;
+            }
+            return false;
+        } catch (SQLException e) {
+            log.error("Checking partition failed | Partition = {}", partition, e);
+            return true;
+        }
+    }
+
+    private List<String> findPartitions(Connection connection, String table) {
+        try (var statement = connection.prepareStatement(PARTITIONS_SQL)) {
+            statement.setString(1, table);
+            try (var resultSet = statement.executeQuery()) {
+                var partitions = new ArrayList<String>();
+                while (resultSet.next()) {
+                    partitions.add(resultSet.getString(1));
+                }
+                return partitions;
+            }
+        } catch (SQLException e) {
+            log.error("Finding partitions failed | Table = {}", table, e);
+            return List.of();
+        }
+    }
+
+    private static boolean execute(Connection connection, String sql) {
+        try (var statement = connection.createStatement()) {
+            statement.execute(sql);
+            log.info("Partition maintained | Statement = {}", sql);
+            return true;
+        } catch (SQLException e) {
+            log.error("Maintaining partition failed | Statement = {}", sql, e);
+            return false;
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            try (var resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            statement.execute();
+        }
+    }
+
+    /**
+     * A partitioned table, and the condition of the rows which are still in use (and keep a partition from being
+     * detached).
+     */
+    private record PartitionedTable(MonthlyPartitions partitions, String inUseCondition) {
+    }
+}
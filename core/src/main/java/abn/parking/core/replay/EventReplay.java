@@ -0,0 +1,138 @@
+package abn.parking.core.replay;
+
+import abn.parking.core.configuration.ReplayProperties;
+import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.dto.StartParkingSessionRequest;
+import abn.parking.core.service.ObservationsService;
+import abn.parking.core.service.SessionsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.NoSuchElementException;
+
+/**
+ * Replays a file of recorded {@link ReplayEvent}s (one JSON object per line, ordered by instant) by calling the
+ * services like the controllers do, with the {@link ReplayClock} set to the instant of every event. The observations
+ * are verified every {@code replay.verification-interval} minutes of replayed time, and once more after the last event.
+ * <p>
+ * The events are replayed against the configured database, which should hold the parking rates of the streets of the
+ * events (and may hold other data, which is not counted in the report).
+ */
+@Component
+@ConditionalOnProperty(prefix = "replay", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class EventReplay {
+    private static final String COUNT_INVOICES_SQL = "SELECT COUNT(session_id), COUNT(observation_id) FROM parking_invoice";
+
+    private final ReplayClock replayClock;
+    private final ReplayProperties replayProperties;
+    private final SessionsService sessionsService;
+    private final ObservationsService observationsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ReplayReport replay(Path file) throws IOException {
+        var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        var invoicesBefore = countInvoices();
+        var start = System.nanoTime();
+
+        var replay = new Replay();
+        try (var reader = Files.newBufferedReader(file);
+             var events = objectMapper.readerFor(ReplayEvent.class).<ReplayEvent>readValues(reader)) {
+            while (events.hasNextValue()) {
+                replay.replay(events.nextValue());
+            }
+        }
+        replay.verify();
+
+        var invoicesAfter = countInvoices();
+        var report = new ReplayReport(replay.events, replay.skippedStops, replay.observations, replay.verifications,
+                invoicesAfter[0] - invoicesBefore[0], invoicesAfter[1] - invoicesBefore[1],
+                Duration.ofNanos(System.nanoTime() - start), Duration.ofNanos(replay.verificationNanos),
+                heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum());
+        log.info("Replaying events | File = {} | Events = {} | Skipped stops = {} | Observations = {} | Verifications = {} | Session invoices = {} | Fines = {} | Processing time = {} ms | Verification time = {} ms | Peak heap = {} MB",
+                file, report.events(), report.skippedStops(), report.observations(), report.verifications(),
+                report.sessionInvoices(), report.fines(), report.processingTime().toMillis(),
+                report.verificationTime().toMillis(), report.peakHeap() / (1024 * 1024));
+        return report;
+    }
+
+    private long[] countInvoices() {
+        return jdbcTemplate.queryForObject(COUNT_INVOICES_SQL, (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    // The state of a single replay.
+    private class Replay {
+        private final Duration verificationInterval = Duration.ofMinutes(replayProperties.getVerificationInterval());
+        private Instant lastInstant;
+        private Instant nextVerification;
+        private long events;
+        private long skippedStops;
+        private long observations;
+        private long verifications;
+        private long verificationNanos;
+
+        void replay(ReplayEvent event) {
+            if (lastInstant != null && event.instant().isBefore(lastInstant)) {
+                throw new IllegalArgumentException("Event %d at %s is before the event at %s, events must be ordered by instant"
+                        .formatted(events + 1, event.instant(), lastInstant));
+            }
+
+            // verify at the moments at which the scheduled verification would have run before the event (once, if the
+            // time between the events is longer than the interval)
+            if (nextVerification == null) {
+                nextVerification = event.instant().plus(verificationInterval);
+            } else if (!event.instant().isBefore(nextVerification) && !verificationInterval.isZero()) {
+                replayClock.set(nextVerification);
+                verify();
+                nextVerification = event.instant().plus(verificationInterval);
+            }
+
+            replayClock.set(event.instant());
+            switch (event.type()) {
+                case START -> sessionsService.startParkingSession(event.license(),
+                        StartParkingSessionRequest.builder().street(event.street()).build());
+                case STOP -> stop(event.license());
+                case OBSERVATIONS -> {
+                    observationsService.addObservations(AddObservationsRequest.builder().observations(event.observations()).build());
+                    observations += event.observations().size();
+                }
+            }
+            lastInstant = event.instant();
+            events++;
+        }
+
+        void verify() {
+            var start = System.nanoTime();
+            observationsService.verifyObservations();
+            verificationNanos += System.nanoTime() - start;
+            verifications++;
+        }
+
+        // sessions which were started before the recording started can't be stopped
+        private void stop(String license) {
+            try {
+                sessionsService.stopParkingSession(license);
+            } catch (NoSuchElementException e) {
+                log.debug("Replaying events | No session to stop | License = {}", license);
+                skippedStops++;
+            }
+        }
+    }
+}
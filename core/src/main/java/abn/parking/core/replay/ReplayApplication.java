@@ -0,0 +1,40 @@
+package abn.parking.core.replay;
+
+import abn.parking.core.CoreApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Replays a file of recorded events with the {@link EventReplay} (without starting the web server), reports the
+ * results and exits. For example, with the local profile:
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.main-class=abn.parking.core.replay.ReplayApplication \
+ *     -Dspring-boot.run.arguments="--spring.profiles.active=local --replay.file=events.jsonl"
+ * </pre>
+ */
+public class ReplayApplication {
+
+    public static void main(String[] args) throws IOException {
+        // the defaults override the properties of the profiles, and are overridden by the arguments (which are added first)
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("replay", Map.of(
+                "replay.enabled", "true",
+                // the observations are verified by the replay, at the interval of the replayed time
+                "observations.process.interval", "1440",
+                "observations.ingestion.mode", "sync")));
+
+        var context = new SpringApplicationBuilder(CoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .environment(environment)
+                .run(args);
+        context.getBean(EventReplay.class).replay(Path.of(context.getEnvironment().getRequiredProperty("replay.file")));
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,45 @@
+package abn.parking.core.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A clock which is set to the time of every replayed event, so that time passes as fast as the events can be processed.
+ * Until the first event is replayed, it is the time of the system.
+ */
+public class ReplayClock extends Clock {
+    private final AtomicReference<Instant> instant;
+    private final ZoneId zone;
+
+    public ReplayClock() {
+        this(new AtomicReference<>(Instant.now()), ZoneOffset.UTC);
+    }
+
+    private ReplayClock(AtomicReference<Instant> instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    public void set(Instant instant) {
+        this.instant.set(instant);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant.get();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // a clock in another zone still follows the replayed time
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new ReplayClock(instant, zone);
+    }
+}
@@ -0,0 +1,30 @@
+package abn.parking.core.replay;
+
+import abn.parking.core.dto.AddObservationsRequestObservation;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A recorded event, which is a line of the replayed file:
+ * <pre>
+ * {"type": "start", "instant": "2024-01-06T08:00:00Z", "license": "AB-123-C", "street": "Europaplein"}
+ * {"type": "observations", "instant": "2024-01-06T08:30:00Z", "observations": [{"license": "AB-123-C", "street": "Europaplein", "observationInstant": "2024-01-06T08:29:12Z"}]}
+ * {"type": "stop", "instant": "2024-01-06T09:00:00Z", "license": "AB-123-C"}
+ * </pre>
+ *
+ * @param instant      the time at which the session was started or stopped, or the observations were uploaded
+ * @param license      the license of a started or stopped session
+ * @param street       the street of a started session
+ * @param observations the uploaded observations
+ */
+public record ReplayEvent(Type type, Instant instant, String license, String street,
+                          List<AddObservationsRequestObservation> observations) {
+
+    public enum Type {
+        @JsonProperty("start") START,
+        @JsonProperty("stop") STOP,
+        @JsonProperty("observations") OBSERVATIONS
+    }
+}
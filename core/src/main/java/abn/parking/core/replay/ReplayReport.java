@@ -0,0 +1,23 @@
+package abn.parking.core.replay;
+
+import java.time.Duration;
+
+/**
+ * The results of a replay.
+ *
+ * @param events           the number of replayed events
+ * @param skippedStops     the number of stopped sessions which were not started in the replayed events (or stopped
+ *                         twice), which are skipped
+ * @param observations     the number of added observations
+ * @param verifications    the number of verification runs
+ * @param sessionInvoices  the number of invoices which were created for stopped sessions
+ * @param fines            the number of fines which were created for observations without a session
+ * @param processingTime   the total time of the replay
+ * @param verificationTime the time of the replay which was spent verifying observations
+ * @param peakHeap         the sum of the peak usages (in bytes) of the heap memory pools during the replay, which is an
+ *                         upper bound of the peak usage of the heap
+ */
+public record ReplayReport(long events, long skippedStops, long observations, long verifications,
+                           long sessionInvoices, long fines, Duration processingTime, Duration verificationTime,
+                           long peakHeap) {
+}
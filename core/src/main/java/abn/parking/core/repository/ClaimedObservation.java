@@ -0,0 +1,10 @@
+package abn.parking.core.repository;
+
+import java.time.Instant;
+
+/**
+ * The id and observation instant of a claimed observation. The observation instant is the partition key of the
+ * vehicle_observation table on Postgres, so statements which include it only touch the partitions of the observations.
+ */
+public record ClaimedObservation(Long id, Instant observationInstant) {
+}
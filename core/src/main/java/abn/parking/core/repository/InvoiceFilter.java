@@ -0,0 +1,20 @@
+package abn.parking.core.repository;
+
+import java.time.Instant;
+
+/**
+ * The filter for a page of the invoices of a license. All fields except the license are optional (null).
+ *
+ * @param license the license of the invoices
+ * @param paid    whether the invoices are paid
+ * @param from    the time at or after which the invoices were created
+ * @param to      the time before which the invoices were created
+ * @param source  whether the invoices were created for sessions or for observations
+ */
+public record InvoiceFilter(String license, Boolean paid, Instant from, Instant to, Source source) {
+
+    public enum Source {
+        SESSION,
+        OBSERVATION
+    }
+}
@@ -0,0 +1,9 @@
+package abn.parking.core.repository;
+
+import java.time.Instant;
+
+/**
+ * The position of an invoice in the pages of invoices, which are ordered by invoice time and id (newest first).
+ */
+public record InvoicePosition(Instant invoiceInstant, Long invoiceId) {
+}
@@ -0,0 +1,13 @@
+package abn.parking.core.repository;
+
+import java.time.Instant;
+
+/**
+ * An invoice together with its session or observation, as a flat row which is selected without loading any entities.
+ * The fields of the session are null for invoices of observations, and the fields of the observation are null for
+ * invoices of sessions.
+ */
+public record InvoiceProjection(Long invoiceId, Instant invoiceInstant, Long amount, Boolean paid,
+                                String sessionLicense, String sessionStreet, Instant sessionStartInstant, Instant sessionEndInstant,
+                                String observationLicense, String observationStreet, Instant observationInstant) {
+}
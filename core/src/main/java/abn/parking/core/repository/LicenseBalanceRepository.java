@@ -0,0 +1,31 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.LicenseBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LicenseBalanceRepository extends JpaRepository<LicenseBalance, String> {
+    /**
+     * Finds the version of the balance of the license, which is incremented whenever an invoice of the license is
+     * created, changed or deleted.
+     */
+    @Query("SELECT b.version FROM abn.parking.core.entity.LicenseBalance b WHERE b.license = :license")
+    Optional<Long> findVersion(@Param("license") String license);
+
+    /**
+     * Finds the licenses of the invoices with one of the given ids.
+     */
+    @Query("SELECT DISTINCT i.license FROM abn.parking.core.entity.ParkingInvoice i WHERE i.id IN :invoiceIds")
+    List<String> findLicensesOfInvoices(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    /**
+     * Finds the licenses of the invoices (fines) of the observations with one of the given ids.
+     */
+    @Query("SELECT DISTINCT i.license FROM abn.parking.core.entity.ParkingInvoice i WHERE i.observation.id IN :observationIds")
+    List<String> findLicensesOfFines(@Param("observationIds") Collection<Long> observationIds);
+}
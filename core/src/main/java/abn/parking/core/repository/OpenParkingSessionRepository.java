@@ -0,0 +1,17 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.OpenParkingSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.Optional;
+
+public interface OpenParkingSessionRepository extends JpaRepository<OpenParkingSession, String> {
+    /**
+     * Finds the open session of the license, and locks it until the end of the transaction, so that concurrent
+     * transactions can't stop the same session.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<OpenParkingSession> findLockedByLicense(String license);
+}
@@ -0,0 +1,12 @@
+package abn.parking.core.repository;
+
+import java.util.List;
+
+public interface ParkingInvoicePageRepository {
+    /**
+     * Finds a page of the invoices which match the filter, ordered by invoice time and id (newest first). The page
+     * starts after the given position (or at the newest invoice when the position is null), so that every page is read
+     * with an index range scan instead of skipping all invoices of the previous pages.
+     */
+    List<InvoiceProjection> findPage(InvoiceFilter filter, InvoicePosition after, int limit);
+}
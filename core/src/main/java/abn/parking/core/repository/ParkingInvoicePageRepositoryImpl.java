@@ -0,0 +1,58 @@
+package abn.parking.core.repository;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.List;
+
+// Implementation of the ParkingInvoicePageRepository fragment, which is picked up by Spring Data because of its name.
+// The query only contains the conditions of the filters which are set, so that the database can pick the best index.
+@RequiredArgsConstructor
+class ParkingInvoicePageRepositoryImpl implements ParkingInvoicePageRepository {
+    private final EntityManager entityManager;
+
+    @Override
+    public List<InvoiceProjection> findPage(InvoiceFilter filter, InvoicePosition after, int limit) {
+        var jpql = new StringBuilder("""
+            SELECT new abn.parking.core.repository.InvoiceProjection(
+                i.id, i.invoiceInstant, i.amount, i.paid,
+                s.license, s.street, s.startInstant, s.endInstant,
+                o.license, o.street, o.observationInstant)
+            FROM abn.parking.core.entity.ParkingInvoice i
+            LEFT JOIN i.session s
+            LEFT JOIN i.observation o
+            WHERE i.license = :license""");
+        var parameters = new HashMap<String, Object>();
+        parameters.put("license", filter.license());
+
+        if (filter.paid() != null) {
+            // a literal instead of a parameter, as Postgres only uses the partial index of unpaid invoices when the
+            // query itself says paid = false
+            jpql.append(filter.paid() ? " AND i.paid = true" : " AND i.paid = false");
+        }
+        if (filter.from() != null) {
+            jpql.append(" AND i.invoiceInstant >= :from");
+            parameters.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            jpql.append(" AND i.invoiceInstant < :to");
+            parameters.put("to", filter.to());
+        }
+        if (filter.source() != null) {
+            jpql.append(filter.source() == InvoiceFilter.Source.SESSION ? " AND i.session IS NOT NULL" : " AND i.observation IS NOT NULL");
+        }
+        if (after != null) {
+            // the first condition bounds the index range scan, the second one skips the invoices at the same time
+            jpql.append(" AND i.invoiceInstant <= :afterInstant AND (i.invoiceInstant < :afterInstant OR i.id < :afterId)");
+            parameters.put("afterInstant", after.invoiceInstant());
+            parameters.put("afterId", after.invoiceId());
+        }
+        jpql.append(" ORDER BY i.invoiceInstant DESC, i.id DESC");
+
+        var query = entityManager.createQuery(jpql.toString(), InvoiceProjection.class).setMaxResults(limit);
+        parameters.forEach(query::setParameter);
+
+        return query.getResultList();
+    }
+}
@@ -2,9 +2,74 @@ package abn.parking.core.repository;
 
 import abn.parking.core.entity.ParkingInvoice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
-public interface ParkingInvoiceRepository extends JpaRepository<ParkingInvoice, Long> {
-    List<ParkingInvoice> findAllBySessionLicenseOrObservationLicense(String sessionLicense, String observationLicense);
+public interface ParkingInvoiceRepository extends JpaRepository<ParkingInvoice, Long>, ParkingInvoicePageRepository {
+    /**
+     * Finds the invoices of a license (by the license of the invoice), together with their sessions or observations.
+     */
+    @Query("""
+        SELECT new abn.parking.core.repository.InvoiceProjection(
+            i.id, i.invoiceInstant, i.amount, i.paid,
+            s.license, s.street, s.startInstant, s.endInstant,
+            o.license, o.street, o.observationInstant)
+        FROM abn.parking.core.entity.ParkingInvoice i
+        LEFT JOIN i.session s
+        LEFT JOIN i.observation o
+        WHERE i.license = :license
+        ORDER BY i.id""")
+    List<InvoiceProjection> findAllByLicense(@Param("license") String license);
+
+    /**
+     * Creates a fine for every unverified observation (with one of the given ids) for which no session was found, on a
+     * street with a fine rate. The observations must have been observed between the given instants (inclusive), so that
+     * only the partitions of the observations, and no partitions of sessions started after them, are searched.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO parking_invoice (paid, amount, invoice_instant, observation_id, license)
+        SELECT false, r.fine_rate, :invoiceInstant, o.id, o.license
+        FROM vehicle_observation o
+        JOIN parking_rate r ON r.street = o.street
+        WHERE o.verified = false
+        AND o.id IN (:ids)
+        AND o.observation_instant BETWEEN :from AND :to
+        AND r.fine_rate <> 0
+        AND NOT EXISTS (
+            SELECT 1 FROM parking_session s
+            WHERE s.license = o.license
+            AND s.street = o.street
+            AND s.start_instant < o.observation_instant
+            AND s.start_instant < :to
+            AND (s.end_instant >= o.observation_instant OR s.end_instant IS NULL))""")
+    int insertFinesForUnverifiedObservations(@Param("ids") List<Long> ids, @Param("from") Instant from, @Param("to") Instant to,
+                                             @Param("invoiceInstant") Instant invoiceInstant);
+
+    /**
+     * Finds the unpaid invoices with one of the given ids, and locks them until the end of the transaction so that they
+     * are paid only once.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT id FROM parking_invoice
+        WHERE id = ANY(:ids) AND paid = false
+        FOR UPDATE""")
+    List<Long> lockUnpaidIds(@Param("ids") Long[] ids);
+
+    /**
+     * Finds which of the given ids are ids of invoices.
+     */
+    @Query(nativeQuery = true, value = "SELECT id FROM parking_invoice WHERE id = ANY(:ids)")
+    List<Long> findExistingIds(@Param("ids") Long[] ids);
+
+    /**
+     * Pays the unpaid invoices with one of the given ids, at the given instant.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE parking_invoice SET paid = true, paid_instant = :paidInstant WHERE id = ANY(:ids) AND paid = false")
+    int payUnpaid(@Param("ids") Long[] ids, @Param("paidInstant") Instant paidInstant);
 }
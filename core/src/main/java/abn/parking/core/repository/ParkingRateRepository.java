@@ -1,11 +1,16 @@
 package abn.parking.core.repository;
 
 import abn.parking.core.entity.ParkingRate;
-import abn.parking.core.entity.ParkingSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
 
 public interface ParkingRateRepository extends JpaRepository<ParkingRate, Long> {
     Optional<ParkingRate> findByStreet(String street);
+
+    @Query("""
+        SELECT new abn.parking.core.repository.ParkingRatesVersion(COUNT(r), COALESCE(MAX(r.id), 0), COALESCE(SUM(r.version), 0))
+        FROM abn.parking.core.entity.ParkingRate r""")
+    ParkingRatesVersion findVersion();
 }
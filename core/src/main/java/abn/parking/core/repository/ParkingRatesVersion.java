@@ -0,0 +1,11 @@
+package abn.parking.core.repository;
+
+/**
+ * A cheap fingerprint of the parking_rate table, which changes whenever a parking rate is added, changed or removed.
+ *
+ * @param count      the number of parking rates
+ * @param maxId      the highest id of all parking rates
+ * @param versionSum the sum of the versions of all parking rates
+ */
+public record ParkingRatesVersion(Long count, Long maxId, Long versionSum) {
+}
@@ -3,19 +3,54 @@ package abn.parking.core.repository;
 import abn.parking.core.entity.ParkingSession;
 import abn.parking.core.entity.VehicleObservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface ParkingSessionRepository extends JpaRepository<ParkingSession, Long> {
-    Optional<ParkingSession> findByLicenseAndEndInstantIsNull(String license);
+    /**
+     * Finds the session with the given id. The start instant of the session limits the query to the partition of the
+     * session (on Postgres).
+     */
+    Optional<ParkingSession> findByIdAndStartInstant(Long id, Instant startInstant);
 
+    List<ParkingSession> findAllByEndInstantIsNullOrEndInstantAfter(Instant endInstant);
+
+    /**
+     * Finds a stopped session which covers the observation. Only sessions which started from the given instant are
+     * searched, which limits the query to the partitions of the sessions which started from that instant, up to the
+     * observation (on Postgres).
+     */
     @Query("""
         SELECT s FROM abn.parking.core.entity.ParkingSession s
         WHERE s.license = :#{#observation.license}
         AND s.street = :#{#observation.street}
         AND s.startInstant < :#{#observation.observationInstant}
-        AND (s.endInstant >= :#{#observation.observationInstant} OR s.endInstant IS NULL)""")
-    Optional<ParkingSession> findSessionForObservation(@Param("observation") VehicleObservation observation);
+        AND s.startInstant >= :from
+        AND s.endInstant >= :#{#observation.observationInstant}""")
+    List<ParkingSession> findStoppedSessionsForObservation(@Param("observation") VehicleObservation observation,
+                                                           @Param("from") Instant from);
+
+    /**
+     * Stops the session with the given id. The start instant of the session limits the statement to the partition of
+     * the session (on Postgres). Clears the persistence context (after flushing it), so that the session is not saved
+     * (by id) again.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE abn.parking.core.entity.ParkingSession s SET s.endInstant = :endInstant
+        WHERE s.id = :id
+        AND s.startInstant = :startInstant""")
+    int stop(@Param("id") Long id, @Param("startInstant") Instant startInstant, @Param("endInstant") Instant endInstant);
+
+    /**
+     * Finds the duration (in seconds, rounded up) of the longest stopped session, which is kept up to date by a trigger
+     * on the parking sessions.
+     */
+    @Query(nativeQuery = true, value = "SELECT duration_seconds FROM parking_session_longest")
+    long findLongestDuration();
 }
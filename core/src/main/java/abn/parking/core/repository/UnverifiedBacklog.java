@@ -0,0 +1,12 @@
+package abn.parking.core.repository;
+
+import java.time.Instant;
+
+/**
+ * The observations which are waiting to be verified.
+ *
+ * @param count         the number of unverified observations
+ * @param oldestInstant the observation instant of the oldest unverified observation, or null if there are none
+ */
+public record UnverifiedBacklog(Long count, Instant oldestInstant) {
+}
@@ -0,0 +1,25 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.VehicleObservation;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+
+public interface VehicleObservationBulkRepository {
+    /**
+     * Inserts all observations from the given iterator, without keeping more than a small buffer of them in memory. On
+     * Postgres the observations are streamed into {@code COPY vehicle_observation FROM STDIN}, on other databases they
+     * are inserted in JDBC batches. Must be called within a transaction.
+     *
+     * @return the number of inserted observations
+     */
+    long insertAll(Iterator<VehicleObservation> vehicleObservations);
+
+    /**
+     * Claims the ids (and observation instants) of the next unverified observations after the given id, like
+     * {@link VehicleObservationRepository#claimUnverifiedAfter} claims the observations. Must be called within a
+     * transaction.
+     */
+    List<ClaimedObservation> claimUnverifiedIdsAfter(Long lastId, Instant from, int limit);
+}
@@ -0,0 +1,113 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.VehicleObservation;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Implementation of the VehicleObservationBulkRepository fragment, which is picked up by Spring Data because of its name.
+@RequiredArgsConstructor
+class VehicleObservationBulkRepositoryImpl implements VehicleObservationBulkRepository {
+    private static final String COPY_SQL = """
+        COPY vehicle_observation (license, street, observation_instant, verified)
+        FROM STDIN WITH (FORMAT csv)""";
+    private static final String INSERT_SQL = """
+        INSERT INTO vehicle_observation (license, street, observation_instant, verified)
+        VALUES (?, ?, ?, false)""";
+    private static final String CLAIM_SQL = """
+        SELECT id, observation_instant FROM vehicle_observation
+        WHERE verified = false AND id > ?
+        AND observation_instant >= ?
+        ORDER BY id
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED""";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long insertAll(Iterator<VehicleObservation> vehicleObservations) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> connection.isWrapperFor(PGConnection.class)
+                ? copy(connection.unwrap(PGConnection.class), vehicleObservations)
+                : batchInsert(vehicleObservations));
+    }
+
+    // The observation instants are read as OffsetDateTime, which both Postgres and H2 return for timestamptz columns.
+    @Override
+    public List<ClaimedObservation> claimUnverifiedIdsAfter(Long lastId, Instant from, int limit) {
+        return jdbcTemplate.query(CLAIM_SQL, (resultSet, rowNum) -> new ClaimedObservation(resultSet.getLong("id"),
+                resultSet.getObject("observation_instant", OffsetDateTime.class).toInstant()), lastId, Timestamp.from(from), limit);
+    }
+
+    private long copy(PGConnection connection, Iterator<VehicleObservation> vehicleObservations) throws SQLException {
+        var copy = new PGCopyOutputStream(connection, COPY_SQL, COPY_BUFFER_SIZE);
+        try {
+            var writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8));
+            while (vehicleObservations.hasNext()) {
+                var vehicleObservation = vehicleObservations.next();
+                writeCsvValue(writer, vehicleObservation.getLicense());
+                writer.write(',');
+                writeCsvValue(writer, vehicleObservation.getStreet());
+                writer.write(',');
+                writer.write(vehicleObservation.getObservationInstant().toString());
+                writer.write(",false\n");
+            }
+            writer.flush();
+            return copy.endCopy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // when the observations could not be read, the rows that were already sent are discarded
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private long batchInsert(Iterator<VehicleObservation> vehicleObservations) {
+        var batch = new ArrayList<Object[]>(BATCH_SIZE);
+        var count = 0L;
+
+        while (vehicleObservations.hasNext()) {
+            var vehicleObservation = vehicleObservations.next();
+            batch.add(new Object[]{vehicleObservation.getLicense(), vehicleObservation.getStreet(),
+                    Timestamp.from(vehicleObservation.getObservationInstant())});
+
+            if (batch.size() == BATCH_SIZE) {
+                count += insertBatch(batch);
+            }
+        }
+
+        return count + insertBatch(batch);
+    }
+
+    private int insertBatch(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        var size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -2,9 +2,46 @@ package abn.parking.core.repository;
 
 import abn.parking.core.entity.VehicleObservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
-public interface VehicleObservationRepository extends JpaRepository<VehicleObservation, Long> {
-    List<VehicleObservation> findAllByVerifiedIsFalse();
+public interface VehicleObservationRepository extends JpaRepository<VehicleObservation, Long>, VehicleObservationBulkRepository {
+    /**
+     * Claims the next unverified observations after the given id, by locking them until the end of the transaction.
+     * Observations which are already claimed (by another transaction) are skipped, so that concurrent transactions
+     * (also on other nodes) never claim the same observations. Only observations which were observed from the given
+     * instant are claimed, so that only the partitions from that instant on are searched.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM vehicle_observation
+        WHERE verified = false AND id > :lastId
+        AND observation_instant >= :from
+        ORDER BY id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED""")
+    List<VehicleObservation> claimUnverifiedAfter(@Param("lastId") Long lastId, @Param("from") Instant from, @Param("limit") int limit);
+
+    /**
+     * Marks the observations with one of the given ids as verified. The observations must have been observed between
+     * the given instants (inclusive), so that only the partitions of that period are searched for the ids.
+     */
+    @Modifying
+    @Query("""
+        UPDATE abn.parking.core.entity.VehicleObservation o SET o.verified = true
+        WHERE o.id IN :ids
+        AND o.observationInstant BETWEEN :from AND :to""")
+    int markVerified(@Param("ids") List<Long> ids, @Param("from") Instant from, @Param("to") Instant to);
+
+    /**
+     * Finds the number of unverified observations, and the observation instant of the oldest one.
+     */
+    @Query("""
+        SELECT new abn.parking.core.repository.UnverifiedBacklog(COUNT(o), MIN(o.observationInstant))
+        FROM abn.parking.core.entity.VehicleObservation o
+        WHERE o.verified = false""")
+    UnverifiedBacklog findUnverifiedBacklog();
 }
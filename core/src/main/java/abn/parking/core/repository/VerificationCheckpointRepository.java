@@ -0,0 +1,7 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.VerificationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface VerificationCheckpointRepository extends JpaRepository<VerificationCheckpoint, String> {
+}
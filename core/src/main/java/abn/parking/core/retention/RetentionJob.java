@@ -0,0 +1,181 @@
+package abn.parking.core.retention;
+
+import abn.parking.core.configuration.RetentionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the rows which are no longer needed on the hot paths to the archive tables:
+ * <ul>
+ *     <li>verified observations without a fine, which are never read again after they have been verified</li>
+ *     <li>sessions which were stopped more than {@code retention.session-retention-days} days ago, and have no
+ *     invoice</li>
+ * </ul>
+ * Observations and sessions with an invoice are never archived, so that the invoices (in the API and in the admin
+ * application) always have their observation or session.
+ * Rows are moved in batches of {@code retention.batch-size} rows, every batch in its own transaction, with a pause of
+ * {@code retention.pause} milliseconds after every batch, so that the job never holds many locks or keeps the database
+ * busy for long. Rows which are locked by other transactions are skipped, and archived by a next run. Multiple nodes
+ * can run the job at the same time.
+ */
+@Component
+@Slf4j
+public class RetentionJob {
+    private static final ArchivedTable OBSERVATIONS = new ArchivedTable("vehicle_observation",
+            """
+                SELECT o.id FROM vehicle_observation o
+                WHERE o.verified = true
+                AND o.observation_instant < :cutoff
+                AND o.id > :lastId
+                AND NOT EXISTS (SELECT 1 FROM parking_invoice i WHERE i.observation_id = o.id)
+                ORDER BY o.id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED""",
+            """
+                INSERT INTO vehicle_observation_archive (id, observation_instant, license, street, archived_instant)
+                SELECT id, observation_instant, license, street, :archivedInstant FROM vehicle_observation
+                WHERE id IN (:ids) AND observation_instant < :cutoff""",
+            """
+                DELETE FROM vehicle_observation
+                WHERE id IN (:ids) AND observation_instant < :cutoff""");
+    // sessions which ended before the cutoff also started before it, which limits the statements to the partitions of
+    // the sessions which started before the cutoff (on Postgres)
+    private static final ArchivedTable SESSIONS = new ArchivedTable("parking_session",
+            """
+                SELECT s.id FROM parking_session s
+                WHERE s.end_instant < :cutoff
+                AND s.start_instant < :cutoff
+                AND s.id > :lastId
+                AND NOT EXISTS (SELECT 1 FROM parking_invoice i WHERE i.session_id = s.id)
+                ORDER BY s.id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED""",
+            """
+                INSERT INTO parking_session_archive (id, start_instant, end_instant, license, street, archived_instant)
+                SELECT id, start_instant, end_instant, license, street, :archivedInstant FROM parking_session
+                WHERE id IN (:ids) AND start_instant < :cutoff""",
+            """
+                DELETE FROM parking_session
+                WHERE id IN (:ids) AND start_instant < :cutoff""");
+
+    private final Clock clock;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RetentionProperties retentionProperties;
+    private final Counter archivedObservations;
+    private final Counter archivedSessions;
+
+    public RetentionJob(Clock clock, NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                        RetentionProperties retentionProperties, MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.retentionProperties = retentionProperties;
+        this.archivedObservations = Counter.builder("retention.archived").tag("table", OBSERVATIONS.table())
+                .description("The number of rows which were moved to the archive tables")
+                .register(meterRegistry);
+        this.archivedSessions = Counter.builder("retention.archived").tag("table", SESSIONS.table())
+                .description("The number of rows which were moved to the archive tables")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${retention.interval}", timeUnit = TimeUnit.MINUTES)
+    public void archive() {
+        if (!retentionProperties.isEnabled()) {
+            return;
+        }
+
+        archiveObservations();
+        archiveSessions();
+    }
+
+    /**
+     * Moves the verified observations without a fine to the archive.
+     *
+     * @return the number of archived observations
+     */
+    public long archiveObservations() {
+        var cutoff = Instant.now(clock).minus(Duration.ofDays(retentionProperties.getObservationRetentionDays()));
+        return archive(OBSERVATIONS, cutoff, archivedObservations);
+    }
+
+    /**
+     * Moves the sessions which were stopped before the session retention, and have no invoice, to the archive.
+     *
+     * @return the number of archived sessions
+     */
+    public long archiveSessions() {
+        var cutoff = Instant.now(clock).minus(Duration.ofDays(retentionProperties.getSessionRetentionDays()));
+        return archive(SESSIONS, cutoff, archivedSessions);
+    }
+
+    // Batches are taken in order of id, so that rows which can't be archived (e.g. because they are locked) are not
+    // selected again in the same run.
+    private long archive(ArchivedTable archivedTable, Instant cutoff, Counter archived) {
+        var start = System.nanoTime();
+        var count = 0L;
+        var lastId = 0L;
+
+        while (true) {
+            var fromId = lastId;
+            var ids = transactionTemplate.execute(status -> archiveBatch(archivedTable, cutoff, fromId));
+            count += ids.size();
+            archived.increment(ids.size());
+
+            if (ids.size() < retentionProperties.getBatchSize()) {
+                break;
+            }
+            lastId = ids.getLast();
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(retentionProperties.getPause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        var seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        log.info("Archived rows | Table = {} | Count = {} | Rate = {} rows/s", archivedTable.table(), count,
+                Math.round(count / seconds));
+        return count;
+    }
+
+    private List<Long> archiveBatch(ArchivedTable archivedTable, Instant cutoff, Long fromId) {
+        var ids = jdbcTemplate.queryForList(archivedTable.selectSql(), new MapSqlParameterSource()
+                .addValue("cutoff", Timestamp.from(cutoff))
+                .addValue("lastId", fromId)
+                .addValue("limit", retentionProperties.getBatchSize()), Long.class);
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        var parameters = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("cutoff", Timestamp.from(cutoff))
+                .addValue("archivedInstant", Timestamp.from(Instant.now(clock)));
+        jdbcTemplate.update(archivedTable.insertSql(), parameters);
+        jdbcTemplate.update(archivedTable.deleteSql(), parameters);
+
+        return ids;
+    }
+
+    /**
+     * A table of which rows are archived, with the statements which select, copy and delete a batch of rows.
+     */
+    private record ArchivedTable(String table, String selectSql, String insertSql, String deleteSql) {
+    }
+}
@@ -0,0 +1,286 @@
+package abn.parking.core.rollup;
+
+import abn.parking.core.configuration.RollupProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the street_daily_rollup table up to date, which holds the revenue, fines, payments and sessions of every street
+ * per day, so that the admin reports don't have to scan the invoices and sessions.
+ * <p>
+ * Only the invoices, payments and sessions after the watermark in rollup_watermark are added, in periods of at most
+ * {@code rollup.window} hours which are each added (and move the watermark) in a single transaction. Rows of the last
+ * {@code rollup.lag} seconds are left for a next run, because transactions which were still running may commit rows
+ * with an instant before the moment at which the rollups were updated. So the lag must be longer than the write
+ * transactions, which are bounded by {@code rollup.write-timeout}, and the job refuses to run otherwise.
+ * The watermark is locked while a period is added, so multiple nodes can run the job at the same time.
+ * <p>
+ * Invoices of which the session or observation can't be found anymore (e.g. because the partition of the observation
+ * was detached) are added to the street {@value #UNKNOWN_STREET}.
+ */
+@Component
+@Slf4j
+public class StreetDailyRollupJob {
+    private static final String WATERMARK_NAME = "street_daily_rollup";
+    static final String UNKNOWN_STREET = "(unknown)";
+    private static final String LOCK_WATERMARK_SQL = """
+        SELECT watermark_instant FROM rollup_watermark
+        WHERE name = :name
+        FOR UPDATE""";
+    private static final String UPDATE_WATERMARK_SQL = """
+        UPDATE rollup_watermark SET watermark_instant = :watermark
+        WHERE name = :name""";
+    private static final String EARLIEST_SQL = """
+        SELECT MIN(instant) FROM (
+            SELECT MIN(invoice_instant) AS instant FROM parking_invoice
+            UNION ALL
+            SELECT MIN(end_instant) AS instant FROM parking_session
+        ) earliest""";
+    // sessions and observations with an invoice are never archived (see RetentionJob)
+    private static final String INVOICES_SQL = """
+        SELECT COALESCE(s.street, o.street) AS street, i.invoice_instant, i.amount, i.observation_id
+        FROM parking_invoice i
+        LEFT JOIN parking_session s ON s.id = i.session_id
+        LEFT JOIN vehicle_observation o ON o.id = i.observation_id
+        WHERE i.%s >= :from AND i.%s < :to""";
+    // sessions which ended before the end of the period also started before it (which limits the partitions on Postgres)
+    private static final String SESSIONS_SQL = """
+        SELECT street, start_instant, end_instant
+        FROM parking_session
+        WHERE end_instant >= :from AND end_instant < :to
+        AND start_instant < :to""";
+    private static final String UPSERT_SQL = """
+        INSERT INTO street_daily_rollup (street, rollup_day, invoice_count, invoice_amount, fine_count, fine_amount,
+            paid_count, paid_amount, session_count, session_minutes)
+        VALUES (:street, :day, :invoiceCount, :invoiceAmount, :fineCount, :fineAmount, :paidCount, :paidAmount,
+            :sessionCount, :sessionMinutes)
+        ON CONFLICT (street, rollup_day) DO UPDATE SET
+            invoice_count = street_daily_rollup.invoice_count + EXCLUDED.invoice_count,
+            invoice_amount = street_daily_rollup.invoice_amount + EXCLUDED.invoice_amount,
+            fine_count = street_daily_rollup.fine_count + EXCLUDED.fine_count,
+            fine_amount = street_daily_rollup.fine_amount + EXCLUDED.fine_amount,
+            paid_count = street_daily_rollup.paid_count + EXCLUDED.paid_count,
+            paid_amount = street_daily_rollup.paid_amount + EXCLUDED.paid_amount,
+            session_count = street_daily_rollup.session_count + EXCLUDED.session_count,
+            session_minutes = street_daily_rollup.session_minutes + EXCLUDED.session_minutes""";
+    private static final String MERGE_SQL = """
+        MERGE INTO street_daily_rollup r
+        USING (VALUES (CAST(:street AS VARCHAR(255)), CAST(:day AS DATE), CAST(:invoiceCount AS BIGINT),
+            CAST(:invoiceAmount AS BIGINT), CAST(:fineCount AS BIGINT), CAST(:fineAmount AS BIGINT),
+            CAST(:paidCount AS BIGINT), CAST(:paidAmount AS BIGINT), CAST(:sessionCount AS BIGINT),
+            CAST(:sessionMinutes AS BIGINT)))
+            d (street, rollup_day, invoice_count, invoice_amount, fine_count, fine_amount, paid_count, paid_amount,
+            session_count, session_minutes)
+        ON r.street = d.street AND r.rollup_day = d.rollup_day
+        WHEN MATCHED THEN UPDATE SET
+            invoice_count = r.invoice_count + d.invoice_count,
+            invoice_amount = r.invoice_amount + d.invoice_amount,
+            fine_count = r.fine_count + d.fine_count,
+            fine_amount = r.fine_amount + d.fine_amount,
+            paid_count = r.paid_count + d.paid_count,
+            paid_amount = r.paid_amount + d.paid_amount,
+            session_count = r.session_count + d.session_count,
+            session_minutes = r.session_minutes + d.session_minutes
+        WHEN NOT MATCHED THEN INSERT (street, rollup_day, invoice_count, invoice_amount, fine_count, fine_amount,
+            paid_count, paid_amount, session_count, session_minutes)
+            VALUES (d.street, d.rollup_day, d.invoice_count, d.invoice_amount, d.fine_count, d.fine_amount,
+            d.paid_count, d.paid_amount, d.session_count, d.session_minutes)""";
+
+    private final Clock clock;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RollupProperties rollupProperties;
+
+    public StreetDailyRollupJob(Clock clock, NamedParameterJdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate, RollupProperties rollupProperties) {
+        this.clock = clock;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rollupProperties = rollupProperties;
+        if (rollupProperties.isEnabled()) {
+            checkLag();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.interval}", timeUnit = TimeUnit.MINUTES)
+    public void scheduledRollUp() {
+        if (!rollupProperties.isEnabled()) {
+            return;
+        }
+
+        rollUp();
+    }
+
+    /**
+     * Adds the invoices, payments and sessions after the watermark to the rollups, up to {@code rollup.lag} seconds ago.
+     *
+     * @return the number of invoices, payments and sessions which were added
+     */
+    public long rollUp() {
+        checkLag();
+        var until = Instant.now(clock).minusSeconds(rollupProperties.getLag());
+        var count = 0L;
+
+        Optional<Long> added;
+        while ((added = transactionTemplate.execute(status -> rollUpPeriod(until))).isPresent()) {
+            count += added.get();
+        }
+        return count;
+    }
+
+    // Adds the rows of the period after the watermark, or returns empty when the watermark has reached the given instant
+    private Optional<Long> rollUpPeriod(Instant until) {
+        var from = Optional.ofNullable(jdbcTemplate.queryForObject(LOCK_WATERMARK_SQL,
+                        new MapSqlParameterSource("name", WATERMARK_NAME), StreetDailyRollupJob::mapInstant))
+                .or(this::findEarliest)
+                .orElse(until);
+        if (!from.isBefore(until)) {
+            return Optional.empty();
+        }
+
+        var windowEnd = from.plus(Duration.ofHours(rollupProperties.getWindow()));
+        var to = windowEnd.isBefore(until) ? windowEnd : until;
+        var period = new MapSqlParameterSource()
+                .addValue("from", Timestamp.from(from))
+                .addValue("to", Timestamp.from(to));
+        var totals = new HashMap<StreetDay, Totals>();
+
+        var invoices = new long[1];
+        jdbcTemplate.query(INVOICES_SQL.formatted("invoice_instant", "invoice_instant"), period, rs -> {
+            var day = totals.computeIfAbsent(StreetDay.of(getStreet(rs), getInstant(rs, "invoice_instant")), key -> new Totals());
+            var amount = rs.getLong("amount");
+            day.invoiceCount++;
+            day.invoiceAmount += amount;
+            if (rs.getObject("observation_id") != null) {
+                day.fineCount++;
+                day.fineAmount += amount;
+            }
+            invoices[0]++;
+        });
+
+        // payments are added to the day of the invoice, so that the paid ratio of a day is the part of its invoices which
+        // has been paid
+        var payments = new long[1];
+        jdbcTemplate.query(INVOICES_SQL.formatted("paid_instant", "paid_instant"), period, rs -> {
+            var day = totals.computeIfAbsent(StreetDay.of(getStreet(rs), getInstant(rs, "invoice_instant")), key -> new Totals());
+            day.paidCount++;
+            day.paidAmount += rs.getLong("amount");
+            payments[0]++;
+        });
+
+        var sessions = new long[1];
+        jdbcTemplate.query(SESSIONS_SQL, period, rs -> {
+            var endInstant = getInstant(rs, "end_instant");
+            var day = totals.computeIfAbsent(StreetDay.of(rs.getString("street"), endInstant), key -> new Totals());
+            day.sessionCount++;
+            day.sessionMinutes += Duration.between(getInstant(rs, "start_instant"), endInstant).toMinutes();
+            sessions[0]++;
+        });
+
+        upsert(totals);
+        jdbcTemplate.update(UPDATE_WATERMARK_SQL, new MapSqlParameterSource()
+                .addValue("name", WATERMARK_NAME)
+                .addValue("watermark", Timestamp.from(to)));
+
+        log.info("Rolled up street days | From = {} | To = {} | Invoices = {} | Payments = {} | Sessions = {} | Street days = {}",
+                from, to, invoices[0], payments[0], sessions[0], totals.size());
+        return Optional.of(invoices[0] + payments[0] + sessions[0]);
+    }
+
+    // Rows of a transaction which commits after the watermark has passed their instant would never be added, so the lag
+    // must be longer than the write transactions, which are rolled back after the write timeout.
+    private void checkLag() {
+        if (rollupProperties.getLag() <= rollupProperties.getWriteTimeout()) {
+            throw new IllegalStateException("rollup.lag (%d seconds) must be longer than rollup.write-timeout (%d seconds)"
+                    .formatted(rollupProperties.getLag(), rollupProperties.getWriteTimeout()));
+        }
+    }
+
+    // the watermark starts at the earliest invoice or session, when it hasn't been set yet
+    private Optional<Instant> findEarliest() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(EARLIEST_SQL, new MapSqlParameterSource(),
+                StreetDailyRollupJob::mapInstant));
+    }
+
+    private void upsert(Map<StreetDay, Totals> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        // MERGE is not safe on Postgres when two transactions create the rollup of the same street and day at the same time
+        var sql = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<String>) connection ->
+                connection.isWrapperFor(PGConnection.class) ? UPSERT_SQL : MERGE_SQL);
+        jdbcTemplate.batchUpdate(sql, totals.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("street", entry.getKey().street())
+                        .addValue("day", Date.valueOf(entry.getKey().day()))
+                        .addValue("invoiceCount", entry.getValue().invoiceCount)
+                        .addValue("invoiceAmount", entry.getValue().invoiceAmount)
+                        .addValue("fineCount", entry.getValue().fineCount)
+                        .addValue("fineAmount", entry.getValue().fineAmount)
+                        .addValue("paidCount", entry.getValue().paidCount)
+                        .addValue("paidAmount", entry.getValue().paidAmount)
+                        .addValue("sessionCount", entry.getValue().sessionCount)
+                        .addValue("sessionMinutes", entry.getValue().sessionMinutes))
+                .toArray(MapSqlParameterSource[]::new));
+    }
+
+    // maps the first column of a row to an instant
+    private static Instant mapInstant(ResultSet rs, int rowNum) throws SQLException {
+        var instant = rs.getObject(1, OffsetDateTime.class);
+        return instant == null ? null : instant.toInstant();
+    }
+
+    private static String getStreet(ResultSet rs) throws SQLException {
+        var street = rs.getString("street");
+        return street != null ? street : UNKNOWN_STREET;
+    }
+
+    private static Instant getInstant(ResultSet rs, String column) throws SQLException {
+        return rs.getObject(column, OffsetDateTime.class).toInstant();
+    }
+
+    /**
+     * A street and a day (UTC), of which the rollup is kept.
+     */
+    private record StreetDay(String street, LocalDate day) {
+        static StreetDay of(String street, Instant instant) {
+            return new StreetDay(street, LocalDate.ofInstant(instant, ZoneOffset.UTC));
+        }
+    }
+
+    /**
+     * The totals which are added to the rollup of a street and day.
+     */
+    private static class Totals {
+        long invoiceCount;
+        long invoiceAmount;
+        long fineCount;
+        long fineAmount;
+        long paidCount;
+        long paidAmount;
+        long sessionCount;
+        long sessionMinutes;
+    }
+}
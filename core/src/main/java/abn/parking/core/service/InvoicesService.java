@@ -1,76 +1,292 @@
 package abn.parking.core.service;
 
+import abn.parking.core.dto.GetInvoicesBalanceResponse;
+import abn.parking.core.dto.GetInvoicesPageResponse;
 import abn.parking.core.dto.GetInvoicesResponse;
 import abn.parking.core.dto.Invoice;
+import abn.parking.core.dto.InvoiceSource;
 import abn.parking.core.dto.Observation;
+import abn.parking.core.dto.PayInvoiceResult;
+import abn.parking.core.dto.PayInvoiceStatus;
+import abn.parking.core.dto.PayInvoicesResponse;
 import abn.parking.core.dto.Session;
-import abn.parking.core.entity.ParkingInvoice;
+import abn.parking.core.exception.InvalidCursorException;
+import abn.parking.core.exception.InvalidInvoiceIdException;
+import abn.parking.core.repository.InvoiceFilter;
+import abn.parking.core.repository.InvoicePosition;
+import abn.parking.core.repository.InvoiceProjection;
 import abn.parking.core.repository.ParkingInvoiceRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class InvoicesService {
 
+    private static final int PAY_CHUNK_SIZE = 1000;
+
+    private final Clock clock;
     private final ParkingInvoiceRepository parkingInvoiceRepository;
+    private final LicenseBalanceService licenseBalanceService;
 
+    @Transactional(readOnly = true)
     public GetInvoicesResponse getInvoices(String license) {
         // Get all invoices for the given license
-        var invoices = parkingInvoiceRepository.findAllBySessionLicenseOrObservationLicense(license, license);
+        var invoices = parkingInvoiceRepository.findAllByLicense(license);
 
         // Map the invoices to the GetInvoicesResponse and return it
         return mapResponse(invoices);
     }
 
+    /**
+     * Gets the version of the invoices of the license, from which the ETags of the invoices responses are derived. The
+     * version is incremented by a trigger for every write of an invoice, so also for the invoices which are paid in the
+     * admin application.
+     */
+    @Transactional(readOnly = true)
+    public long getInvoicesVersion(String license) {
+        return licenseBalanceService.getVersion(license);
+    }
+
+    @Transactional(readOnly = true)
+    public GetInvoicesPageResponse getInvoicesPage(String license, Boolean paid, Instant from, Instant to, InvoiceSource source,
+                                                   int limit, String cursor) {
+        var filter = new InvoiceFilter(license, paid, from, to, source == null ? null : switch (source) {
+            case SESSION -> InvoiceFilter.Source.SESSION;
+            case OBSERVATION -> InvoiceFilter.Source.OBSERVATION;
+        });
+
+        // Get one invoice more than the limit, to find out whether there is a next page
+        var invoices = parkingInvoiceRepository.findPage(filter, cursor == null ? null : decodeCursor(cursor), limit + 1);
+        var page = invoices.subList(0, Math.min(limit, invoices.size()));
+
+        // Map the invoices to the GetInvoicesPageResponse and return it, with a cursor pointing at the last invoice
+        return GetInvoicesPageResponse.builder()
+                .invoices(page.stream().map(InvoicesService::mapInvoice).toList())
+                .nextCursor(invoices.size() > limit ? encodeCursor(page.getLast()) : null)
+                .build();
+    }
+
+    // The balance is always read from the primary, as a balance which was read from a replica before it replicated a
+    // change would be kept in the cache after the change.
+    public GetInvoicesBalanceResponse getInvoicesBalance(String license) {
+        var balance = licenseBalanceService.getBalance(license);
+
+        return GetInvoicesBalanceResponse.builder()
+                .license(license)
+                .openBalance(balance.openBalance())
+                .unpaidCount(balance.unpaidCount())
+                .latestInvoiceInstant(balance.latestInvoiceInstant())
+                .build();
+    }
+
+    @Transactional(timeoutString = "${rollup.write-timeout}")
     public void payInvoice(Long invoiceId) {
-        // Get the invoice by id (the NoSuchElementException will lead to a 404 response if no session was found)
-        var invoice = parkingInvoiceRepository.findById(invoiceId).orElseThrow();
+        // Lock the invoice if it is unpaid, so that an invoice which is paid concurrently (by this or the other pay
+        // endpoints) is subtracted from the balance only once
+        var ids = new Long[]{invoiceId};
+        if (parkingInvoiceRepository.lockUnpaidIds(ids).isEmpty()) {
+            // An invoice which has already been paid is not paid again, and an unknown invoice leads to a 404 response
+            if (!parkingInvoiceRepository.existsById(invoiceId)) {
+                throw new NoSuchElementException("Invoice %d was not found".formatted(invoiceId));
+            }
+            return;
+        }
+
+        // Set the invoice as paid (which subtracts it from the balance), and evict the balance only if this transaction
+        // paid it
+        if (parkingInvoiceRepository.payUnpaid(ids, Instant.now(clock)) > 0) {
+            licenseBalanceService.evictInvoices(List.of(invoiceId));
+        }
+    }
+
+    /**
+     * Pays the invoices with the given ids, in chunks of {@value #PAY_CHUNK_SIZE} invoices which are each paid with a
+     * few set-based statements.
+     */
+    @Transactional(timeoutString = "${rollup.write-timeout}")
+    public PayInvoicesResponse payInvoices(List<Long> invoiceIds) {
+        var payment = new InvoicesPayment();
+        invoiceIds.forEach(payment::add);
 
-        // Set the invoice as paid
-        invoice.setPaid(true);
+        return payment.finish();
+    }
+
+    /**
+     * Pays the invoices with the ids in the stream (one id per line), while the stream is being read. Unlike the other
+     * payments, the transaction has no timeout, as the stream may take long. The invoices are only paid at the end.
+     */
+    @Transactional
+    public PayInvoicesResponse streamPayInvoices(InputStreamResource body) {
+        var payment = new InvoicesPayment();
+
+        try (var reader = new BufferedReader(new InputStreamReader(body.getInputStream(), StandardCharsets.UTF_8))) {
+            var lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.isBlank()) {
+                    payment.add(parseInvoiceId(line, lineNumber));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return payment.finish();
+    }
 
-        // Save the invoice
-        parkingInvoiceRepository.save(invoice);
+    private static Long parseInvoiceId(String line, int lineNumber) {
+        try {
+            return Long.valueOf(line.strip());
+        } catch (NumberFormatException e) {
+            throw new InvalidInvoiceIdException("Line %d is not an invoice id: %s".formatted(lineNumber, line), e);
+        }
     }
 
-    private static GetInvoicesResponse mapResponse(List<ParkingInvoice> invoices) {
+    /**
+     * Maps the invoices of a license to the response of {@code GET /invoices}.
+     */
+    public static GetInvoicesResponse mapResponse(List<InvoiceProjection> invoices) {
         return GetInvoicesResponse.builder()
-                .invoices(invoices.stream().map(invoice -> Invoice.builder()
-                        .invoiceId(invoice.getId())
-                        .invoiceInstant(invoice.getInvoiceInstant())
-                        .session(mapSession(invoice))
-                        .observation(mapObservation(invoice))
-                        .amount(invoice.getAmount())
-                        .paid(invoice.getPaid())
-                        .build()).toList()).build();
+                .invoices(invoices.stream().map(InvoicesService::mapInvoice).toList())
+                .build();
+    }
+
+    private static Invoice mapInvoice(InvoiceProjection invoice) {
+        return Invoice.builder()
+                .invoiceId(invoice.invoiceId())
+                .invoiceInstant(invoice.invoiceInstant())
+                .session(mapSession(invoice))
+                .observation(mapObservation(invoice))
+                .amount(invoice.amount())
+                .paid(invoice.paid())
+                .build();
+    }
+
+    // The cursor is the position of the last invoice of a page, which is opaque to clients.
+    private static String encodeCursor(InvoiceProjection invoice) {
+        var position = invoice.invoiceInstant() + "," + invoice.invoiceId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InvoicePosition decodeCursor(String cursor) {
+        try {
+            var position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+            return new InvoicePosition(Instant.parse(position[0]), Long.parseLong(position[1]));
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException(cursor, e);
+        }
     }
 
-    private static Observation mapObservation(ParkingInvoice invoice) {
-        if (invoice.getObservation() == null) {
+    private static Observation mapObservation(InvoiceProjection invoice) {
+        if (invoice.observationLicense() == null) {
             return null;
         }
 
         return Observation.builder()
-                .license(invoice.getObservation().getLicense())
-                .street(invoice.getObservation().getStreet())
-                .observationInstant(invoice.getObservation().getObservationInstant())
+                .license(invoice.observationLicense())
+                .street(invoice.observationStreet())
+                .observationInstant(invoice.observationInstant())
                 .build();
     }
 
-    private static Session mapSession(ParkingInvoice invoice) {
-        if (invoice.getSession() == null) {
+    private static Session mapSession(InvoiceProjection invoice) {
+        if (invoice.sessionLicense() == null) {
             return null;
         }
 
         return Session.builder()
-                .license(invoice.getSession().getLicense())
-                .street(invoice.getSession().getStreet())
-                .startInstant(invoice.getSession().getStartInstant())
-                .endInstant(invoice.getSession().getEndInstant())
+                .license(invoice.sessionLicense())
+                .street(invoice.sessionStreet())
+                .startInstant(invoice.sessionStartInstant())
+                .endInstant(invoice.sessionEndInstant())
                 .build();
     }
 
+    // Collects the ids of the invoices to pay into chunks, and locks the unpaid invoices of every full chunk. The locked
+    // invoices are only paid when the payment is finished, all at the same instant right before the transaction
+    // commits, so that the paid instant is never older than the rollup lag when the payment becomes visible, however
+    // long the stream of ids takes. The status of every distinct id is kept in the order in which the ids were added.
+    private class InvoicesPayment {
+        private final Map<Long, PayInvoiceStatus> statuses = new LinkedHashMap<>();
+        private final Set<Long> chunk = new LinkedHashSet<>();
+        private final List<Long[]> unpaidChunks = new ArrayList<>();
+
+        void add(Long invoiceId) {
+            if (statuses.containsKey(invoiceId) || !chunk.add(invoiceId)) {
+                return;
+            }
+
+            if (chunk.size() == PAY_CHUNK_SIZE) {
+                payChunk();
+            }
+        }
+
+        PayInvoicesResponse finish() {
+            payChunk();
+
+            var paidInstant = Instant.now(clock);
+            unpaidChunks.forEach(unpaidIds -> {
+                parkingInvoiceRepository.payUnpaid(unpaidIds, paidInstant);
+                licenseBalanceService.evictInvoices(Arrays.asList(unpaidIds));
+            });
+
+            var counts = statuses.values().stream().collect(Collectors.groupingBy(status -> status, Collectors.counting()));
+            log.info("Paid invoices | Paid = {} | Already paid = {} | Not found = {}", counts.getOrDefault(PayInvoiceStatus.PAID, 0L),
+                    counts.getOrDefault(PayInvoiceStatus.ALREADY_PAID, 0L), counts.getOrDefault(PayInvoiceStatus.NOT_FOUND, 0L));
+            return PayInvoicesResponse.builder()
+                    .results(statuses.entrySet().stream()
+                            .map(entry -> PayInvoiceResult.builder().invoiceId(entry.getKey()).status(entry.getValue()).build())
+                            .toList())
+                    .paid(counts.getOrDefault(PayInvoiceStatus.PAID, 0L))
+                    .alreadyPaid(counts.getOrDefault(PayInvoiceStatus.ALREADY_PAID, 0L))
+                    .notFound(counts.getOrDefault(PayInvoiceStatus.NOT_FOUND, 0L))
+                    .build();
+        }
+
+        private void payChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            // Lock the unpaid invoices, so that an invoice which is paid concurrently is reported as paid only once
+            var unpaidIds = new HashSet<>(parkingInvoiceRepository.lockUnpaidIds(chunk.toArray(Long[]::new)));
+            if (!unpaidIds.isEmpty()) {
+                unpaidChunks.add(unpaidIds.toArray(Long[]::new));
+            }
+
+            // The other ids are either ids of paid invoices or unknown, which is only looked up when there are any
+            var otherIds = chunk.stream().filter(id -> !unpaidIds.contains(id)).toArray(Long[]::new);
+            var paidIds = otherIds.length == 0 ? Set.<Long>of() : new HashSet<>(parkingInvoiceRepository.findExistingIds(otherIds));
+
+            chunk.forEach(id -> statuses.put(id, unpaidIds.contains(id) ? PayInvoiceStatus.PAID
+                    : paidIds.contains(id) ? PayInvoiceStatus.ALREADY_PAID : PayInvoiceStatus.NOT_FOUND));
+            chunk.clear();
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package abn.parking.core.service;
+
+import abn.parking.core.configuration.LicenseBalanceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the balances of recently read licenses in memory, up to {@code invoices.balance.cache-size} balances. Reads
+ * don't take a lock, the balances are kept in a {@link ConcurrentHashMap}.
+ * <p>
+ * The balance of a license is evicted when one of its invoices is created or paid on this node, as soon as the
+ * transaction which changed the balance is committed. A balance which was read from the database while another balance
+ * was evicted is not kept, as it may have been read before that transaction was committed.
+ * <p>
+ * Invoices which are created (by the verification) or paid on other nodes (or in the admin application) don't evict
+ * the balance on this node, so a balance is kept for at most {@code invoices.balance.cache-ttl} seconds, which bounds
+ * how long such changes are not seen.
+ */
+@Component
+public class LicenseBalanceCache {
+    private final LicenseBalanceProperties licenseBalanceProperties;
+    private final ConcurrentMap<String, CachedBalance> balances = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    // incremented on every eviction
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LicenseBalanceCache(LicenseBalanceProperties licenseBalanceProperties, MeterRegistry meterRegistry) {
+        this.licenseBalanceProperties = licenseBalanceProperties;
+        this.hits = Counter.builder("invoices.balance.lookups").tag("result", "hit")
+                .description("The number of license balance lookups which were found in the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("invoices.balance.lookups").tag("result", "miss")
+                .description("The number of license balance lookups which were read from the database")
+                .register(meterRegistry);
+        Gauge.builder("invoices.balance.cache.size", this, LicenseBalanceCache::getSize)
+                .description("The number of license balances in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finds the balance of the license in the cache, or loads it with the loader (and adds it to the cache).
+     */
+    public Balance get(String license, Supplier<Balance> loader) {
+        var cached = balances.get(license);
+        if (cached != null && !cached.isExpired(licenseBalanceProperties.getCacheTtl())) {
+            hits.increment();
+            return cached.balance();
+        }
+
+        var evictionsBeforeLoad = evictions.get();
+        misses.increment();
+        var loaded = new CachedBalance(loader.get(), System.nanoTime());
+        balances.put(license, loaded);
+        // the balance may have been loaded before a transaction which changed it was committed, so it is only kept when
+        // no balance was evicted in the meantime (the eviction may have happened before the put)
+        if (evictions.get() != evictionsBeforeLoad) {
+            balances.remove(license, loaded);
+        } else if (balances.size() > licenseBalanceProperties.getCacheSize()) {
+            trim();
+        }
+
+        return loaded.balance();
+    }
+
+    /**
+     * Evicts the balances of the licenses, as soon as the current transaction (if any) is committed.
+     */
+    public void evict(Collection<String> licenses) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictNow(licenses);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictNow(licenses);
+            }
+        });
+    }
+
+    /**
+     * Evicts all balances, for example after the license_balance table was changed outside of the application.
+     */
+    public void clear() {
+        evictions.incrementAndGet();
+        balances.clear();
+    }
+
+    /**
+     * The number of balances in the cache.
+     */
+    public int getSize() {
+        return balances.size();
+    }
+
+    private void evictNow(Collection<String> licenses) {
+        evictions.incrementAndGet();
+        licenses.forEach(balances::remove);
+    }
+
+    // Removes the expired balances, and then arbitrary balances until a tenth of the cache is free again, so that the
+    // cache is only walked once for every tenth of the cache size of balances which are added
+    private void trim() {
+        var ttl = licenseBalanceProperties.getCacheTtl();
+        balances.values().removeIf(cached -> cached.isExpired(ttl));
+
+        var cacheSize = licenseBalanceProperties.getCacheSize();
+        var iterator = balances.keySet().iterator();
+        while (balances.size() > cacheSize - cacheSize / 10 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    // the time at which the balance was loaded, which the time to live counts from
+    private record CachedBalance(Balance balance, long loadedNanos) {
+        boolean isExpired(long ttlSeconds) {
+            return System.nanoTime() - loadedNanos >= TimeUnit.SECONDS.toNanos(ttlSeconds);
+        }
+    }
+
+    /**
+     * The outstanding balance of a license.
+     *
+     * @param openBalance          the sum of the amounts (cents) of the unpaid invoices
+     * @param unpaidCount          the number of unpaid invoices
+     * @param latestInvoiceInstant the date and time of the latest invoice, or null if the license has no invoices
+     */
+    public record Balance(Long openBalance, Long unpaidCount, Instant latestInvoiceInstant) {
+        public static final Balance NONE = new Balance(0L, 0L, null);
+    }
+}
@@ -0,0 +1,68 @@
+package abn.parking.core.service;
+
+import abn.parking.core.repository.LicenseBalanceRepository;
+import abn.parking.core.service.LicenseBalanceCache.Balance;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * Reads the balances of the licenses (see {@link abn.parking.core.entity.LicenseBalance}). The balances are kept up to
+ * date by triggers on the invoices, for every write of an invoice (also by the admin application). The transactions
+ * which create or pay invoices on this node evict the cached balances of their licenses, so the methods which evict
+ * them must be called within those transactions, after the invoices were created or paid.
+ */
+@Service
+@RequiredArgsConstructor
+public class LicenseBalanceService {
+    private final LicenseBalanceRepository licenseBalanceRepository;
+    private final LicenseBalanceCache licenseBalanceCache;
+
+    /**
+     * Gets the balance of the license, which is a balance of zero for a license without invoices.
+     */
+    public Balance getBalance(String license) {
+        return licenseBalanceCache.get(license, () -> licenseBalanceRepository.findById(license)
+                .map(balance -> new Balance(balance.getOpenBalance(), balance.getUnpaidCount(), balance.getLatestInvoiceInstant()))
+                .orElse(Balance.NONE));
+    }
+
+    /**
+     * Gets the version of the invoices of the license, which changes whenever an invoice of the license is created,
+     * changed or deleted (and is 0 for a license without invoices). The version is always read from the database, as
+     * invoices may have been changed on other nodes or in the admin application.
+     */
+    public long getVersion(String license) {
+        return licenseBalanceRepository.findVersion(license).orElse(0L);
+    }
+
+    /**
+     * Evicts the balances of the licenses of which invoices were created or paid.
+     */
+    public void evict(Collection<String> licenses) {
+        licenseBalanceCache.evict(licenses);
+    }
+
+    /**
+     * Evicts the balances of the licenses of the created or paid invoices with the given ids.
+     */
+    public void evictInvoices(Collection<Long> invoiceIds) {
+        if (invoiceIds.isEmpty()) {
+            return;
+        }
+
+        licenseBalanceCache.evict(licenseBalanceRepository.findLicensesOfInvoices(invoiceIds));
+    }
+
+    /**
+     * Evicts the balances of the licenses of the created fines for the observations with the given ids.
+     */
+    public void evictFines(Collection<Long> observationIds) {
+        if (observationIds.isEmpty()) {
+            return;
+        }
+
+        licenseBalanceCache.evict(licenseBalanceRepository.findLicensesOfFines(observationIds));
+    }
+}
@@ -0,0 +1,259 @@
+package abn.parking.core.service;
+
+import abn.parking.core.configuration.ObservationsIngestionProperties;
+import abn.parking.core.configuration.ObservationsIngestionProperties.IngestionMode;
+import abn.parking.core.entity.VehicleObservation;
+import abn.parking.core.exception.ObservationsQueueFullException;
+import abn.parking.core.exception.ObservationsTooLargeException;
+import abn.parking.core.repository.VehicleObservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded in-memory queue of observations which are waiting to be written to the database, used when observations
+ * are ingested asynchronously.
+ * <p>
+ * The capacity of the queue is counted in observations (not in requests), and the observations of a request are either
+ * all added to the queue or not at all. A single writer thread takes the observations from the queue and writes them
+ * in batches of up to {@code observations.ingestion.batch-size} observations. When the application is stopped, the
+ * writer first writes all observations which are still in the queue.
+ */
+@Component
+@Slf4j
+public class ObservationsQueue implements SmartLifecycle {
+    private final VehicleObservationRepository vehicleObservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObservationsIngestionProperties observationsIngestionProperties;
+    private final Environment environment;
+    private final LinkedBlockingQueue<QueuedObservations> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Counter written;
+    private final Counter rejected;
+    private final Counter dropped;
+    private final Timer lag;
+    private volatile boolean running;
+    private Thread writer;
+
+    public ObservationsQueue(VehicleObservationRepository vehicleObservationRepository, TransactionTemplate transactionTemplate,
+                             ObservationsIngestionProperties observationsIngestionProperties, Environment environment,
+                             MeterRegistry meterRegistry) {
+        this.vehicleObservationRepository = vehicleObservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.observationsIngestionProperties = observationsIngestionProperties;
+        this.environment = environment;
+        this.capacity = new Semaphore(observationsIngestionProperties.getQueueCapacity());
+        Gauge.builder("observations.queue.depth", this, ObservationsQueue::getDepth)
+                .description("The number of observations waiting in the queue to be written")
+                .register(meterRegistry);
+        this.written = Counter.builder("observations.queue.written")
+                .description("The number of observations written from the queue to the database")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("observations.queue.rejected")
+                .description("The number of observations which were not added because the queue was full")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("observations.queue.dropped")
+                .description("The number of observations which were taken from the queue but could not be written")
+                .register(meterRegistry);
+        this.lag = Timer.builder("observations.queue.lag")
+                .description("The time between adding observations to the queue and writing them to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds the observations to the queue.
+     *
+     * @throws ObservationsTooLargeException  when there are more observations than fit in the queue at all
+     * @throws ObservationsQueueFullException when there is not enough room in the queue for all observations
+     */
+    public void add(List<VehicleObservation> vehicleObservations) {
+        if (vehicleObservations.size() > observationsIngestionProperties.getQueueCapacity()) {
+            rejected.increment(vehicleObservations.size());
+            throw new ObservationsTooLargeException(observationsIngestionProperties.getQueueCapacity());
+        }
+        if (!capacity.tryAcquire(vehicleObservations.size())) {
+            rejected.increment(vehicleObservations.size());
+            throw new ObservationsQueueFullException(observationsIngestionProperties.getRetryAfter());
+        }
+
+        queue.add(new QueuedObservations(vehicleObservations, System.nanoTime()));
+    }
+
+    /**
+     * The number of observations waiting in the queue to be written.
+     */
+    public int getDepth() {
+        return observationsIngestionProperties.getQueueCapacity() - capacity.availablePermits();
+    }
+
+    @Override
+    public void start() {
+        if (observationsIngestionProperties.getMode() != IngestionMode.ASYNC) {
+            return;
+        }
+
+        running = true;
+        writer = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("observations-writer-1").unstarted(this::writeObservations)
+                : new CustomizableThreadFactory("observations-writer-").newThread(this::writeObservations);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    // The writer is started before and stopped after the web server, so that observations which are added while the
+    // web server is shutting down are still written.
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    // Keeps writing batches until the application is stopped and the queue is empty.
+    private void writeObservations() {
+        while (running || !queue.isEmpty()) {
+            try {
+                var batch = takeBatch();
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Waits for the first observations, and then for more observations until the batch is full or the linger time
+    // has passed.
+    private List<QueuedObservations> takeBatch() throws InterruptedException {
+        var batch = new ArrayList<QueuedObservations>();
+        var first = queue.poll(observationsIngestionProperties.getLinger(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        var size = first.vehicleObservations().size();
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(observationsIngestionProperties.getLinger());
+        while (size < observationsIngestionProperties.getBatchSize()) {
+            var next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            size += next.vehicleObservations().size();
+        }
+
+        return batch;
+    }
+
+    // The room taken by a batch is only given back when it has been handled, so a failed batch is retried a limited
+    // number of times, while the queue fills up and clients are asked to retry later. Observations which the database
+    // rejects, or which still can't be written after the last attempt, are dropped so that they don't block the queue.
+    private void writeBatch(List<QueuedObservations> batch) throws InterruptedException {
+        var vehicleObservations = batch.stream().flatMap(queued -> queued.vehicleObservations().stream()).toList();
+
+        try {
+            var result = write(vehicleObservations);
+            if (result == WriteResult.REJECTED && batch.size() > 1) {
+                // the observations of a single request are rejected, so the requests are written one at a time to
+                // only drop the observations of that request
+                for (var queued : batch) {
+                    handle(List.of(queued), write(queued.vehicleObservations()));
+                }
+            } else {
+                handle(batch, result);
+            }
+        } finally {
+            capacity.release(vehicleObservations.size());
+        }
+    }
+
+    private void handle(List<QueuedObservations> batch, WriteResult result) {
+        var count = batch.stream().mapToInt(queued -> queued.vehicleObservations().size()).sum();
+        if (result == WriteResult.WRITTEN) {
+            var now = System.nanoTime();
+            batch.forEach(queued -> lag.record(Duration.ofNanos(now - queued.enqueuedNanos())));
+            written.increment(count);
+        } else {
+            dropped.increment(count);
+        }
+    }
+
+    private WriteResult write(List<VehicleObservation> vehicleObservations) throws InterruptedException {
+        for (var attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> vehicleObservationRepository.saveAll(vehicleObservations));
+                return WriteResult.WRITTEN;
+            } catch (DataIntegrityViolationException e) {
+                // retrying won't help when the database rejects the observations, e.g. a street which is too long
+                log.error("Observations were rejected by the database | Count = {}", vehicleObservations.size(), e);
+                resetIds(vehicleObservations);
+                return WriteResult.REJECTED;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    // don't keep the application from stopping when the database is not available
+                    log.error("Writing observations failed while stopping, observations are lost | Count = {}", vehicleObservations.size(), e);
+                    return WriteResult.FAILED;
+                }
+                if (attempt >= observationsIngestionProperties.getMaxAttempts()) {
+                    log.error("Writing observations failed, observations are lost | Count = {} | Attempts = {}",
+                            vehicleObservations.size(), attempt, e);
+                    return WriteResult.FAILED;
+                }
+
+                log.error("Writing observations failed, retrying | Count = {} | Attempt = {}", vehicleObservations.size(), attempt, e);
+                resetIds(vehicleObservations);
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+    }
+
+    // the entities have been given ids by the failed transaction
+    private static void resetIds(List<VehicleObservation> vehicleObservations) {
+        vehicleObservations.forEach(vehicleObservation -> vehicleObservation.setId(null));
+    }
+
+    private enum WriteResult {
+        WRITTEN,
+        REJECTED,
+        FAILED
+    }
+
+    private record QueuedObservations(List<VehicleObservation> vehicleObservations, long enqueuedNanos) {
+    }
+}
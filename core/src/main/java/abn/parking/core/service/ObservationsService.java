@@ -1,63 +1,218 @@
 package abn.parking.core.service;
 
+import abn.parking.core.configuration.ObservationsIngestionProperties;
+import abn.parking.core.configuration.ObservationsProcessProperties;
+import abn.parking.core.configuration.ObservationsProcessProperties.VerificationMode;
 import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.dto.AddObservationsRequestObservation;
 import abn.parking.core.entity.ParkingInvoice;
-import abn.parking.core.entity.ParkingRate;
 import abn.parking.core.entity.VehicleObservation;
+import abn.parking.core.entity.VerificationCheckpoint;
+import abn.parking.core.exception.InvalidObservationException;
+import abn.parking.core.repository.ClaimedObservation;
+import abn.parking.core.repository.OpenParkingSessionRepository;
 import abn.parking.core.repository.ParkingInvoiceRepository;
-import abn.parking.core.repository.ParkingRateRepository;
 import abn.parking.core.repository.ParkingSessionRepository;
 import abn.parking.core.repository.VehicleObservationRepository;
-import jakarta.transaction.Transactional;
+import abn.parking.core.repository.VerificationCheckpointRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ObservationsService {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder().addModule(new JavaTimeModule()).build();
+
     private final Clock clock;
     private final VehicleObservationRepository vehicleObservationRepository;
     private final ParkingSessionRepository parkingSessionRepository;
-    private final ParkingRateRepository parkingRateRepository;
+    private final OpenParkingSessionRepository openParkingSessionRepository;
+    private final ParkingRateCache parkingRateCache;
     private final ParkingInvoiceRepository parkingInvoiceRepository;
+    private final VerificationCheckpointRepository verificationCheckpointRepository;
+    private final ObservationsProcessProperties observationsProcessProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService verificationExecutor;
+    private final ObjectMapper objectMapper;
+    private final ObservationsQueue observationsQueue;
+    private final ObservationsIngestionProperties observationsIngestionProperties;
+    private final SessionIndex sessionIndex;
+    private final LicenseBalanceService licenseBalanceService;
+    private final ParkingMetrics parkingMetrics;
 
+    @Transactional(timeoutString = "${rollup.write-timeout}")
     public void addObservations(AddObservationsRequest addObservationsRequest) {
         // map observations to entity objects
         var vehicleObservations = addObservationsRequest.getObservations().stream()
-                .map(observation -> {
-                    var vehicleObservation = new VehicleObservation();
-                    vehicleObservation.setLicense(observation.getLicense());
-                    vehicleObservation.setObservationInstant(observation.getObservationInstant());
-                    vehicleObservation.setStreet(observation.getStreet());
-                    vehicleObservation.setVerified(false);
-                    return vehicleObservation;
-                }).toList();
-
-        // save observations (if the list gets too large, consider using a batch insert)
+                .map(ObservationsService::toVehicleObservation)
+                .toList();
+
+        // verify observations right away (if enabled), before they are saved
+        var observationsToFine = observationsIngestionProperties.isInlineVerification()
+                ? verifyInline(vehicleObservations) : List.<VehicleObservation>of();
+
+        // save observations (inserted in JDBC batches of hibernate.jdbc.batch_size rows)
         vehicleObservationRepository.saveAll(vehicleObservations);
+        observationsToFine.forEach(this::createInvoice);
+        parkingMetrics.recordIngested("sync", vehicleObservations.size());
     }
 
+    /**
+     * Adds the observations to the queue of observations which are written to the database in the background.
+     *
+     * @throws abn.parking.core.exception.ObservationsQueueFullException when the queue is full
+     */
+    public void enqueueObservations(AddObservationsRequest addObservationsRequest) {
+        var vehicleObservations = addObservationsRequest.getObservations().stream()
+                .map(ObservationsService::toVehicleObservation)
+                .toList();
+        observationsQueue.add(vehicleObservations);
+        parkingMetrics.recordIngested("async", vehicleObservations.size());
+    }
+
+    /**
+     * Adds the observations from a stream of NDJSON lines or CSV rows. Observations are read one at a time while they
+     * are written to the database, so only a small buffer of them is kept in memory regardless of the size of the stream.
+     *
+     * @return the number of added observations
+     */
     @Transactional
+    public long streamObservations(InputStreamResource body, MediaType mediaType) {
+        try (var observations = readerFor(mediaType).<AddObservationsRequestObservation>readValues(body.getInputStream())) {
+            var count = vehicleObservationRepository.insertAll(new VehicleObservationIterator(observations));
+
+            log.info("Streamed observations | Count = {}", count);
+            parkingMetrics.recordIngested("stream", count);
+            return count;
+        } catch (JsonProcessingException e) {
+            throw new InvalidObservationException("Observation could not be read: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Marks the observations which can be verified with the session index as verified, and returns the observations
+    // which need to be fined. Observations which can't be verified with the index are left for the scheduled task.
+    private List<VehicleObservation> verifyInline(List<VehicleObservation> vehicleObservations) {
+        var observationsToFine = new ArrayList<VehicleObservation>();
+
+        vehicleObservations.forEach(observation -> {
+            switch (sessionIndex.findCoverage(observation)) {
+                case COVERED -> observation.setVerified(true);
+                case NOT_COVERED -> {
+                    // a fine is only created when the database agrees, as the session may have been started on another node
+                    if (!hasSessionForObservation(observation)) {
+                        observationsToFine.add(observation);
+                    }
+                    observation.setVerified(true);
+                }
+                case UNKNOWN -> {
+                }
+            }
+        });
+
+        return observationsToFine;
+    }
+
     @Scheduled(fixedDelayString = "${observations.process.interval}", timeUnit = TimeUnit.MINUTES)
     public void verifyObservations() {
+        verifyObservations(observationsProcessProperties.getMode());
+    }
+
+    // Observations are verified by a number of workers in parallel, which all claim their own chunks of observations.
+    // Only observations from the oldest unverified observation at the start of the run are claimed, which limits the
+    // claims to the partitions from that observation on (on Postgres). Older observations which are added during the
+    // run are verified by the next run.
+    public void verifyObservations(VerificationMode mode) {
+        log.info("Verifying observations | State = Started");
+
+        var oldestInstant = vehicleObservationRepository.findUnverifiedBacklog().oldestInstant();
+        var claimFrom = oldestInstant != null ? oldestInstant : Instant.now(clock);
+        parkingMetrics.recordVerification(mode, () -> {
+            var workers = IntStream.range(0, observationsProcessProperties.getWorkers())
+                    .mapToObj(worker -> CompletableFuture.runAsync(() -> verifyObservations(mode, worker, claimFrom), verificationExecutor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(workers).join();
+        });
+        parkingMetrics.recordBacklog(vehicleObservationRepository.findUnverifiedBacklog());
+
         log.info("Verifying observations | State = Finished");
+    }
 
-        // Find all unverified observations that
-        var unverifiedObservations = vehicleObservationRepository.findAllByVerifiedIsFalse();
+    // Observations are verified in chunks (ordered by id), every chunk in its own transaction. The id of the last
+    // observation of every chunk is stored as a checkpoint, so an interrupted run continues after the last chunk.
+    private void verifyObservations(VerificationMode mode, int worker, Instant claimFrom) {
+        var checkpointName = "observations-%s-%d".formatted(observationsProcessProperties.getNodeId(), worker);
+        var lastId = verificationCheckpointRepository.findById(checkpointName).map(VerificationCheckpoint::getLastId).orElse(0L);
+        var chunkSize = observationsProcessProperties.getChunkSize();
+        while (true) {
+            var fromId = lastId;
+            var chunk = transactionTemplate.execute(status -> verifyChunk(mode, checkpointName, fromId, claimFrom, chunkSize));
+            if (chunk.size() > 0) {
+                parkingMetrics.recordVerifiedChunk(chunk.size());
+            }
 
-        unverifiedObservations.forEach(observation -> {
-            // find session
-            var optionalSession = parkingSessionRepository.findSessionForObservation(observation);
+            // stop after the first chunk which is not full, the remaining observations will be verified by the next run
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            lastId = chunk.lastId();
+        }
+
+        // observations with a lower id than the checkpoint may still be unverified (if they were added while the run
+        // was in progress, or were claimed by another worker which failed), so the next run starts from the beginning
+        saveCheckpoint(checkpointName, 0L);
+    }
+
+    private Chunk verifyChunk(VerificationMode mode, String checkpointName, Long fromId, Instant claimFrom, int chunkSize) {
+        var chunk = switch (mode) {
+            case ROW -> verifyChunkPerRow(fromId, claimFrom, chunkSize);
+            case SET -> verifyChunkSetBased(fromId, claimFrom, chunkSize);
+        };
+
+        // store the checkpoint in the same transaction as the verified observations
+        if (chunk.size() > 0) {
+            saveCheckpoint(checkpointName, chunk.lastId());
+        }
+
+        return chunk;
+    }
+
+    private Chunk verifyChunkPerRow(Long fromId, Instant claimFrom, int chunkSize) {
+        // Claim the next chunk of unverified observations
+        var unverifiedObservations = vehicleObservationRepository.claimUnverifiedAfter(fromId, claimFrom, chunkSize);
 
+        unverifiedObservations.forEach(observation -> {
             // if no session is found, fine the vehicle
-            if (optionalSession.isEmpty()) {
+            if (!hasSessionForObservation(observation)) {
                 createInvoice(observation);
             }
 
@@ -66,11 +221,60 @@ public class ObservationsService {
             vehicleObservationRepository.save(observation);
         });
 
-        log.info("Verifying observations  | State = Finished");
+        return unverifiedObservations.isEmpty() ? Chunk.EMPTY
+                : new Chunk(unverifiedObservations.size(), unverifiedObservations.getLast().getId());
+    }
+
+    private Chunk verifyChunkSetBased(Long fromId, Instant claimFrom, int chunkSize) {
+        // Claim the ids of the next chunk of unverified observations
+        var unverifiedObservations = vehicleObservationRepository.claimUnverifiedIdsAfter(fromId, claimFrom, chunkSize);
+        if (unverifiedObservations.isEmpty()) {
+            return Chunk.EMPTY;
+        }
+        var unverifiedIds = unverifiedObservations.stream().map(ClaimedObservation::id).toList();
+
+        // the period of the observations, which limits the statements to the partitions of that period (on Postgres)
+        var instants = unverifiedObservations.stream().map(ClaimedObservation::observationInstant).toList();
+        var from = Collections.min(instants);
+        var to = Collections.max(instants);
+
+        // fine all vehicles which were observed without a session, on a street with a fine rate
+        var fines = parkingInvoiceRepository.insertFinesForUnverifiedObservations(unverifiedIds, from, to, Instant.now(clock));
+        if (fines > 0) {
+            licenseBalanceService.evictFines(unverifiedIds);
+        }
+        parkingMetrics.finesCreated(fines);
+
+        // mark the observations as verified
+        vehicleObservationRepository.markVerified(unverifiedIds, from, to);
+
+        return new Chunk(unverifiedIds.size(), unverifiedIds.getLast());
+    }
+
+    // The open session of the license is looked up first, and the longest duration of the stopped sessions is read after
+    // it, so that a session which is stopped in between is either found as the open session, or is covered by the
+    // longest duration when it is looked up as a stopped session.
+    private boolean hasSessionForObservation(VehicleObservation observation) {
+        var openSession = openParkingSessionRepository.findById(observation.getLicense());
+        if (openSession.isPresent()
+                && openSession.get().getStreet().equals(observation.getStreet())
+                && openSession.get().getStartInstant().isBefore(observation.getObservationInstant())) {
+            return true;
+        }
+
+        var from = observation.getObservationInstant().minusSeconds(parkingSessionRepository.findLongestDuration());
+        return !parkingSessionRepository.findStoppedSessionsForObservation(observation, from).isEmpty();
+    }
+
+    private void saveCheckpoint(String checkpointName, Long lastId) {
+        var checkpoint = new VerificationCheckpoint();
+        checkpoint.setName(checkpointName);
+        checkpoint.setLastId(lastId);
+        verificationCheckpointRepository.save(checkpoint);
     }
 
     private void createInvoice(VehicleObservation observation) {
-        var rate = parkingRateRepository.findByStreet(observation.getStreet()).map(ParkingRate::getFineRate)
+        var rate = parkingRateCache.findByStreet(observation.getStreet()).map(ParkingRateCache.Rate::fineRate)
                 .orElse(0); // if no fine rate was found for the given street, the rate is 0
 
         if (rate == 0) {
@@ -79,9 +283,72 @@ public class ObservationsService {
 
         var invoice = new ParkingInvoice();
         invoice.setObservation(observation);
+        invoice.setLicense(observation.getLicense());
         invoice.setInvoiceInstant(Instant.now(clock));
         invoice.setAmount(rate.longValue());
         invoice.setPaid(false);
         parkingInvoiceRepository.save(invoice);
+        licenseBalanceService.evict(List.of(invoice.getLicense()));
+        parkingMetrics.finesCreated(1);
+    }
+
+    /**
+     * The number of observations in a verified chunk, and the id of the last observation in the chunk.
+     */
+    private record Chunk(int size, Long lastId) {
+        static final Chunk EMPTY = new Chunk(0, null);
+    }
+
+    private ObjectReader readerFor(MediaType mediaType) {
+        if (NDJSON.isCompatibleWith(mediaType)) {
+            return objectMapper.readerFor(AddObservationsRequestObservation.class);
+        }
+        return CSV_MAPPER.readerFor(AddObservationsRequestObservation.class).with(CsvSchema.emptySchema().withHeader());
+    }
+
+    private static VehicleObservation toVehicleObservation(AddObservationsRequestObservation observation) {
+        var vehicleObservation = new VehicleObservation();
+        vehicleObservation.setLicense(observation.getLicense());
+        vehicleObservation.setObservationInstant(observation.getObservationInstant());
+        vehicleObservation.setStreet(observation.getStreet());
+        vehicleObservation.setVerified(false);
+        return vehicleObservation;
+    }
+
+    // Reads the next observation from the stream only when it is asked for, and checks that it is complete.
+    @RequiredArgsConstructor
+    private static class VehicleObservationIterator implements Iterator<VehicleObservation> {
+        private final MappingIterator<AddObservationsRequestObservation> observations;
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return observations.hasNextValue();
+            } catch (IOException e) {
+                throw invalidObservation(e);
+            }
+        }
+
+        @Override
+        public VehicleObservation next() {
+            try {
+                var observation = observations.nextValue();
+                if (observation.getLicense() == null || observation.getStreet() == null || observation.getObservationInstant() == null) {
+                    throw new InvalidObservationException("Observation on line %d is incomplete, license, street and observationInstant are required"
+                            .formatted(observations.getCurrentLocation().getLineNr()));
+                }
+                return toVehicleObservation(observation);
+            } catch (IOException e) {
+                throw invalidObservation(e);
+            }
+        }
+
+        private RuntimeException invalidObservation(IOException e) {
+            if (e instanceof JsonProcessingException jsonProcessingException) {
+                return new InvalidObservationException("Observation on line %d could not be read: %s"
+                        .formatted(observations.getCurrentLocation().getLineNr(), jsonProcessingException.getOriginalMessage()), e);
+            }
+            return new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,140 @@
+package abn.parking.core.service;
+
+import abn.parking.core.configuration.ObservationsProcessProperties.VerificationMode;
+import abn.parking.core.repository.UnverifiedBacklog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The metrics of billing, ingestion and verification, which are exported to Prometheus (at /actuator/prometheus).
+ * <p>
+ * Metrics are only tagged by street for streets with a parking rate, which are configured by administrators. All other
+ * streets (which are sent by clients, so there is no limit to them) are tagged as {@value #OTHER_STREET}.
+ */
+@Component
+public class ParkingMetrics {
+    static final String OTHER_STREET = "other";
+
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final ParkingRateCache parkingRateCache;
+    private final Counter sessionInvoices;
+    private final Counter fines;
+    private final DistributionSummary verifiedChunkSize;
+    private final Map<VerificationMode, Timer> verifications = new EnumMap<>(VerificationMode.class);
+    // the meters which are tagged by street or by ingestion mode are registered on their first use, and then reused
+    private final Map<String, Timer> amountCalculations = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> ingested = new ConcurrentHashMap<>();
+    private final AtomicReference<UnverifiedBacklog> backlog = new AtomicReference<>(new UnverifiedBacklog(0L, null));
+
+    public ParkingMetrics(Clock clock, MeterRegistry meterRegistry, ParkingRateCache parkingRateCache) {
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.parkingRateCache = parkingRateCache;
+        this.sessionInvoices = Counter.builder("invoices.issued").tag("type", "session")
+                .description("The number of invoices which were created for stopped sessions")
+                .register(meterRegistry);
+        this.fines = Counter.builder("invoices.issued").tag("type", "fine")
+                .description("The number of fines which were created for observations without a session")
+                .register(meterRegistry);
+        this.verifiedChunkSize = DistributionSummary.builder("observations.verification.chunk.size")
+                .description("The number of observations in every verified chunk")
+                .register(meterRegistry);
+        Arrays.stream(VerificationMode.values()).forEach(mode -> verifications.put(mode, Timer.builder("observations.verification")
+                .description("The duration of the verification runs")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meterRegistry)));
+        Gauge.builder("observations.unverified", backlog, reference -> reference.get().count())
+                .description("The number of observations which are waiting to be verified, as of the last verification run")
+                .register(meterRegistry);
+        Gauge.builder("observations.unverified.age", this, metrics -> metrics.getBacklogAge().toMillis() / 1000.0)
+                .description("The time since the oldest unverified observation (as of the last verification run) was observed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the duration of a verification run.
+     */
+    public void recordVerification(VerificationMode mode, Runnable verification) {
+        verifications.get(mode).record(verification);
+    }
+
+    /**
+     * Records the number of observations of a verified chunk.
+     */
+    public void recordVerifiedChunk(int size) {
+        verifiedChunkSize.record(size);
+    }
+
+    /**
+     * Records the observations which are waiting to be verified.
+     */
+    public void recordBacklog(UnverifiedBacklog unverifiedBacklog) {
+        backlog.set(unverifiedBacklog);
+    }
+
+    /**
+     * Records the latency of the calculation of the amount of a session on a street.
+     */
+    public <T> T recordAmountCalculation(String street, Supplier<T> calculation) {
+        return amountCalculations.computeIfAbsent(streetTag(street), tag -> Timer.builder("sessions.amount.calculation")
+                        .description("The latency of calculating the amounts of stopped sessions")
+                        .tag("street", tag)
+                        .register(meterRegistry))
+                .record(calculation);
+    }
+
+    /**
+     * Records the number of observations which were ingested by a request.
+     *
+     * @param mode how the observations were ingested (sync, async or stream)
+     */
+    public void recordIngested(String mode, long count) {
+        ingested.computeIfAbsent(mode, tag -> DistributionSummary.builder("observations.ingested")
+                        .description("The number of observations which were ingested per request")
+                        .tag("mode", tag)
+                        .register(meterRegistry))
+                .record(count);
+    }
+
+    /**
+     * Records invoices which were created for stopped sessions.
+     */
+    public void sessionInvoicesCreated(long count) {
+        sessionInvoices.increment(count);
+    }
+
+    /**
+     * Records fines which were created for observations without a session.
+     */
+    public void finesCreated(long count) {
+        fines.increment(count);
+    }
+
+    /**
+     * The time since the oldest unverified observation was observed, or zero if there are none.
+     */
+    public Duration getBacklogAge() {
+        var oldestInstant = backlog.get().oldestInstant();
+        return oldestInstant == null ? Duration.ZERO : Duration.between(oldestInstant, Instant.now(clock));
+    }
+
+    private String streetTag(String street) {
+        return parkingRateCache.hasRate(street) ? street : OTHER_STREET;
+    }
+}
@@ -0,0 +1,136 @@
+package abn.parking.core.service;
+
+import abn.parking.core.entity.ParkingRate;
+import abn.parking.core.repository.ParkingRateRepository;
+import abn.parking.core.repository.ParkingRatesVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an in-memory snapshot of all parking rates, so that billing sessions and fining vehicles doesn't need a round
+ * trip to the database for every lookup.
+ * <p>
+ * Parking rates are only changed by administrators (in the admin application), so they are rarely changed. The cache
+ * periodically compares a cheap fingerprint of the parking_rate table with the fingerprint of the snapshot, and only
+ * loads a new snapshot when they differ. A new snapshot is swapped in atomically, so lookups never wait for a reload.
+ */
+@Component
+@Slf4j
+public class ParkingRateCache {
+    private final Clock clock;
+    private final ParkingRateRepository parkingRateRepository;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final Counter misses;
+
+    public ParkingRateCache(Clock clock, ParkingRateRepository parkingRateRepository, MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.parkingRateRepository = parkingRateRepository;
+        this.meterRegistry = meterRegistry;
+        // misses are not tagged by street, as there is no limit to the streets without a parking rate
+        this.misses = Counter.builder("parking.rates.lookups").tag("result", "miss").tag("street", ParkingMetrics.OTHER_STREET)
+                .description("The number of parking rate lookups for a street without a parking rate")
+                .register(meterRegistry);
+        Gauge.builder("parking.rates.snapshot.age", this, cache -> cache.getSnapshotAge().toMillis() / 1000.0)
+                .description("The time since the parking rates snapshot was last loaded or verified")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("parking.rates.snapshot.size", this, cache -> cache.snapshot.get().rates().size())
+                .description("The number of parking rates in the snapshot")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        load(parkingRateRepository.findVersion());
+    }
+
+    /**
+     * Finds the parking rate for the given street in the current snapshot.
+     */
+    public Optional<Rate> findByStreet(String street) {
+        var streetRate = snapshot.get().rates().get(street);
+
+        if (streetRate == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        streetRate.hits().increment();
+        return Optional.of(streetRate.rate());
+    }
+
+    /**
+     * Whether the street has a parking rate in the current snapshot (without counting it as a lookup).
+     */
+    public boolean hasRate(String street) {
+        return snapshot.get().rates().containsKey(street);
+    }
+
+    /**
+     * Checks whether the parking rates have changed since the current snapshot was loaded, and loads a new snapshot if
+     * they have.
+     */
+    @Scheduled(fixedDelayString = "${parking.rates.refresh-interval}", timeUnit = TimeUnit.SECONDS)
+    public void refresh() {
+        var version = parkingRateRepository.findVersion();
+        var current = snapshot.get();
+
+        if (version.equals(current.version())) {
+            snapshot.set(new Snapshot(current.rates(), current.version(), Instant.now(clock)));
+            return;
+        }
+
+        load(version);
+    }
+
+    /**
+     * The time since the current snapshot was loaded, or last verified to still be up to date.
+     */
+    public Duration getSnapshotAge() {
+        return Duration.between(snapshot.get().verifiedInstant(), Instant.now(clock)).abs();
+    }
+
+    private void load(ParkingRatesVersion version) {
+        // the counters of the hits are registered once per snapshot, instead of on every lookup
+        var rates = parkingRateRepository.findAll().stream()
+                .collect(Collectors.toUnmodifiableMap(ParkingRate::getStreet, rate -> new StreetRate(
+                        new Rate(rate.getRate(), rate.getFineRate()),
+                        Counter.builder("parking.rates.lookups").tag("result", "hit").tag("street", rate.getStreet())
+                                .description("The number of parking rate lookups for a street with a parking rate")
+                                .register(meterRegistry))));
+
+        snapshot.set(new Snapshot(rates, version, Instant.now(clock)));
+        log.info("Loaded parking rates | Count = {}", rates.size());
+    }
+
+    /**
+     * The parking rate of a street.
+     *
+     * @param rate     the price (in cents per minute) at which vehicles are charged for parking on the street
+     * @param fineRate the flat price (in cents) which vehicles are charged when they have parked on the street without an open parking session
+     */
+    public record Rate(Integer rate, Integer fineRate) {
+    }
+
+    // the parking rate of a street, and the counter of the lookups which found it
+    private record StreetRate(Rate rate, Counter hits) {
+    }
+
+    private record Snapshot(Map<String, StreetRate> rates, ParkingRatesVersion version, Instant verifiedInstant) {
+    }
+}
@@ -0,0 +1,158 @@
+package abn.parking.core.service;
+
+import abn.parking.core.configuration.ObservationsIngestionProperties;
+import abn.parking.core.entity.ParkingSession;
+import abn.parking.core.entity.VehicleObservation;
+import abn.parking.core.repository.ParkingSessionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory index of the open sessions and the recently stopped sessions, by license and street, which is used to
+ * verify observations as soon as they are added (see {@link ObservationsIngestionProperties#isInlineVerification()}).
+ * <p>
+ * The index is built from the parking_session table at startup, and kept up to date by the {@link SessionsService}.
+ * Stopped sessions are evicted from the index when they have been stopped longer than the session retention ago, after
+ * which the index can no longer tell whether older observations were covered by a session.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SessionIndex {
+    private final Clock clock;
+    private final ParkingSessionRepository parkingSessionRepository;
+    private final ObservationsIngestionProperties observationsIngestionProperties;
+    private final Map<SessionKey, List<IndexedSession>> sessions = new ConcurrentHashMap<>();
+    // observations before this instant can't be verified with the index, as their sessions may have been evicted
+    private volatile Instant horizon = Instant.MAX;
+
+    /**
+     * Rebuilds the index from the open sessions and the recently stopped sessions in the database.
+     */
+    @PostConstruct
+    public void rebuild() {
+        if (!observationsIngestionProperties.isInlineVerification()) {
+            return;
+        }
+
+        var newHorizon = Instant.now(clock).minus(getSessionRetention());
+        horizon = Instant.MAX;
+        sessions.clear();
+        var indexedSessions = parkingSessionRepository.findAllByEndInstantIsNullOrEndInstantAfter(newHorizon);
+        indexedSessions.forEach(this::put);
+        horizon = newHorizon;
+
+        log.info("Rebuilt session index | Count = {}", indexedSessions.size());
+    }
+
+    /**
+     * Adds a started or stopped session to the index, as soon as the current transaction (if any) is committed.
+     */
+    public void update(ParkingSession session) {
+        if (!observationsIngestionProperties.isInlineVerification()) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(session);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(session);
+            }
+        });
+    }
+
+    /**
+     * Looks up whether the observation is covered by a session (which was started before and not stopped before the
+     * observation).
+     */
+    public Coverage findCoverage(VehicleObservation observation) {
+        var observationInstant = observation.getObservationInstant();
+        // sessions covering observations in the future could still be started
+        if (observationInstant.isBefore(horizon) || observationInstant.isAfter(Instant.now(clock))) {
+            return Coverage.UNKNOWN;
+        }
+
+        var covered = sessions.getOrDefault(new SessionKey(observation.getLicense(), observation.getStreet()), List.of()).stream()
+                .anyMatch(session -> session.startInstant().isBefore(observationInstant)
+                        && (session.endInstant() == null || !session.endInstant().isBefore(observationInstant)));
+
+        return covered ? Coverage.COVERED : Coverage.NOT_COVERED;
+    }
+
+    /**
+     * Evicts the sessions which have been stopped longer than the session retention ago.
+     */
+    @Scheduled(fixedDelayString = "${observations.process.interval}", timeUnit = TimeUnit.MINUTES)
+    public void evict() {
+        if (!observationsIngestionProperties.isInlineVerification()) {
+            return;
+        }
+
+        var newHorizon = Instant.now(clock).minus(getSessionRetention());
+        // move the horizon first, so that observations are never verified against sessions which are being evicted
+        horizon = newHorizon;
+        sessions.replaceAll((key, indexedSessions) -> indexedSessions.stream()
+                .filter(session -> session.endInstant() == null || !session.endInstant().isBefore(newHorizon))
+                .toList());
+        sessions.values().removeIf(List::isEmpty);
+    }
+
+    private void put(ParkingSession session) {
+        var indexedSession = new IndexedSession(session.getId(), session.getStartInstant(), session.getEndInstant());
+
+        sessions.compute(new SessionKey(session.getLicense(), session.getStreet()), (key, indexedSessions) -> {
+            var updatedSessions = new ArrayList<IndexedSession>();
+            if (indexedSessions != null) {
+                indexedSessions.stream().filter(existing -> !existing.id().equals(session.getId())).forEach(updatedSessions::add);
+            }
+            updatedSessions.add(indexedSession);
+            return List.copyOf(updatedSessions);
+        });
+    }
+
+    private Duration getSessionRetention() {
+        return Duration.ofMinutes(observationsIngestionProperties.getSessionRetention());
+    }
+
+    public enum Coverage {
+        /**
+         * The observation is covered by a session in the index.
+         */
+        COVERED,
+
+        /**
+         * The observation is not covered by any of the sessions in the index.
+         */
+        NOT_COVERED,
+
+        /**
+         * The index can't tell whether the observation is covered by a session.
+         */
+        UNKNOWN
+    }
+
+    private record SessionKey(String license, String street) {
+    }
+
+    private record IndexedSession(Long id, Instant startInstant, Instant endInstant) {
+    }
+}
@@ -1,18 +1,23 @@
 package abn.parking.core.service;
 
-import abn.parking.core.configuration.ParkingScheduleProperties;
 import abn.parking.core.dto.*;
 import abn.parking.core.entity.ParkingInvoice;
-import abn.parking.core.entity.ParkingRate;
 import abn.parking.core.entity.ParkingSession;
+import abn.parking.core.exception.SessionAlreadyOpenException;
+import abn.parking.core.repository.OpenParkingSessionRepository;
 import abn.parking.core.repository.ParkingInvoiceRepository;
-import abn.parking.core.repository.ParkingRateRepository;
 import abn.parking.core.repository.ParkingSessionRepository;
-import jakarta.transaction.Transactional;
+import abn.parking.core.tariff.TariffCalendarHolder;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.*;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -20,10 +25,15 @@ public class SessionsService {
 
     private final Clock clock;
     private final ParkingSessionRepository parkingSessionRepository;
-    private final ParkingRateRepository parkingRateRepository;
+    private final OpenParkingSessionRepository openParkingSessionRepository;
+    private final ParkingRateCache parkingRateCache;
     private final ParkingInvoiceRepository parkingInvoiceRepository;
-    private final ParkingScheduleProperties parkingScheduleProperties;
+    private final TariffCalendarHolder tariffCalendarHolder;
+    private final SessionIndex sessionIndex;
+    private final LicenseBalanceService licenseBalanceService;
+    private final ParkingMetrics parkingMetrics;
 
+    @Transactional
     public StartParkingSessionResponse startParkingSession(String license, StartParkingSessionRequest startParkingSessionRequest) {
         // create the session entity
         var session = new ParkingSession();
@@ -31,8 +41,18 @@ public class SessionsService {
         session.setStreet(startParkingSessionRequest.getStreet());
         session.setStartInstant(Instant.now(clock));
 
-        // save the session
-        var savedSession = parkingSessionRepository.save(session);
+        // save the session, which adds it as the open session of the license (which fails if the license already has one)
+        ParkingSession savedSession;
+        try {
+            savedSession = parkingSessionRepository.save(session);
+        } catch (DataIntegrityViolationException e) {
+            // only the unique violation of the open session of the license is a conflict, any other violation is a bug
+            if (e.getCause() instanceof ConstraintViolationException violation && violation.getKind() == ConstraintKind.UNIQUE) {
+                throw new SessionAlreadyOpenException(license, e);
+            }
+            throw e;
+        }
+        sessionIndex.update(savedSession);
 
         // map the saved session to the response and return it
         return StartParkingSessionResponse.builder()
@@ -42,14 +62,20 @@ public class SessionsService {
                 .build();
     }
 
-    @Transactional
+    @Transactional(timeoutString = "${rollup.write-timeout}")
     public Invoice stopParkingSession(String license) {
-        // get the open session by license (the NoSuchElementException will lead to a 404 response if no session was found)
-        var session = parkingSessionRepository.findByLicenseAndEndInstantIsNull(license).orElseThrow();
-
-        // set the end instant for the session and save it
-        session.setEndInstant(Instant.now(clock));
-        session = parkingSessionRepository.save(session);
+        // get the open session by license (the NoSuchElementException will lead to a 404 response if no session was found),
+        // and look it up in its own partition
+        var openSession = openParkingSessionRepository.findLockedByLicense(license).orElseThrow();
+        var session = parkingSessionRepository.findByIdAndStartInstant(openSession.getSessionId(), openSession.getStartInstant())
+                .orElseThrow();
+
+        // stop the session in its own partition (which removes it as the open session of the license, and records its
+        // duration when it is the longest so far)
+        var endInstant = Instant.now(clock);
+        parkingSessionRepository.stop(session.getId(), session.getStartInstant(), endInstant);
+        session.setEndInstant(endInstant);
+        sessionIndex.update(session);
 
         // calculate the amount that needs to be paid for the session
         var amount = calculateAmountForSession(session);
@@ -62,52 +88,31 @@ public class SessionsService {
         // create an invoice for the stopped session and save it
         var invoice = new ParkingInvoice();
         invoice.setSession(session);
+        invoice.setLicense(session.getLicense());
         invoice.setInvoiceInstant(session.getEndInstant());
         invoice.setPaid(false);
         invoice.setAmount(amount);
         invoice = parkingInvoiceRepository.save(invoice);
+        licenseBalanceService.evict(List.of(invoice.getLicense()));
+        parkingMetrics.sessionInvoicesCreated(1);
 
         // return response
         return mapStopParkingSessionResponse(invoice, session);
     }
 
     private Long calculateAmountForSession(ParkingSession session) {
-        // get the rate for the street where the session took place
-        var rate = parkingRateRepository.findByStreet(session.getStreet()).map(ParkingRate::getRate)
-                .orElse(0); // if no rate was found for the given street, the rate is 0
-
-        // Convert Instants to LocalDateTimes in the specified time zone
-        var startDateTime = LocalDateTime.ofInstant(session.getStartInstant(), ZoneId.of(parkingScheduleProperties.getZoneId()));
-        var endDateTime = LocalDateTime.ofInstant(session.getEndInstant(), ZoneId.of(parkingScheduleProperties.getZoneId()));
-
-        // Calculate total minutes in the chargeable period
-        Long totalChargeableMinutes = calculateChargeableMinutes(startDateTime, endDateTime);
-
-        // calculate the amount that needs to be paid for the session
-        return totalChargeableMinutes * rate;
-    }
-
-    // Note: currently we are brute forcing the calculation of chargeable minutes by iterating over every minute in the session.
-    // There may be a more efficient way to calculate this, but we're keeping it simple for now.
-    private Long calculateChargeableMinutes(LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        var totalChargeableMinutes = 0L;
-
-        var current = startDateTime;
-        var parkingPeriodStart = LocalTime.of(parkingScheduleProperties.getStartTime().getHour(), parkingScheduleProperties.getStartTime().getMinute()).minus(Duration.ofMillis(1));
-        var parkingPeriodEnd = LocalTime.of(parkingScheduleProperties.getEndTime().getHour(), parkingScheduleProperties.getEndTime().getMinute());
-        while (current.isBefore(endDateTime)) {
-
-            if (current.toLocalTime().isAfter(parkingPeriodStart) // if the current minute is after the start of the parking period
-                    && current.toLocalTime().isBefore(parkingPeriodEnd) // and the current minute is before the end of the parking period
-                    && !current.getDayOfWeek().equals(DayOfWeek.SUNDAY)) { // and the current minute is not on a Sunday
-                totalChargeableMinutes++; // increment the total chargeable minutes
-            }
-
-            // Move to the next minute
-            current = current.plusMinutes(1);
-        }
-
-        return totalChargeableMinutes;
+        return parkingMetrics.recordAmountCalculation(session.getStreet(), () -> {
+            // get the rate for the street where the session took place
+            var rate = parkingRateCache.findByStreet(session.getStreet()).map(ParkingRateCache.Rate::rate)
+                    .orElse(0); // if no rate was found for the given street, the rate is 0
+
+            // Calculate total minutes in the chargeable period, using the schedule of the street
+            var totalChargeableMinutes = tariffCalendarHolder.getCalendar()
+                    .calculateChargeableMinutes(session.getStreet(), session.getStartInstant(), session.getEndInstant());
+
+            // calculate the amount that needs to be paid for the session
+            return totalChargeableMinutes * rate;
+        });
     }
 
     private Invoice mapStopParkingSessionResponse(ParkingInvoice invoice, ParkingSession session) {
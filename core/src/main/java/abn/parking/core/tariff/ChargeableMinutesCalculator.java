@@ -0,0 +1,152 @@
+package abn.parking.core.tariff;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Calculates the chargeable minutes of a parking session.
+ * <p>
+ * Every minute of a session (counted from the start of the session) which starts within the daily parking period, on
+ * a chargeable day of the week which is not a holiday, is chargeable. Instead of visiting every minute of the session,
+ * the first and the last day of the session are calculated on their own and all days in between are counted as whole
+ * days, so the calculation takes the same time for a session of an hour as for a session of a year.
+ * <p>
+ * Everything that does not depend on the session (the parking period, the chargeable days of the week and the sorted
+ * holidays) is prepared when the calculator is created, and instances are immutable, so they can be shared freely.
+ * <p>
+ * The calculation is done on local date-times (the wall clock in the zone of the parking schedule), which means that
+ * every day has 24 hours, including the days on which the clocks are changed for daylight saving time.
+ */
+public class ChargeableMinutesCalculator {
+    private static final long NANOS_PER_SECOND = Duration.ofSeconds(1).toNanos();
+    private static final long NANOS_PER_MINUTE = Duration.ofMinutes(1).toNanos();
+    private static final int DAYS_PER_WEEK = 7;
+
+    /**
+     * The (exclusive) time after which a minute needs to start to be chargeable.
+     */
+    private final LocalTime periodStart;
+
+    /**
+     * The (exclusive) time before which a minute needs to start to be chargeable.
+     */
+    private final LocalTime periodEnd;
+
+    /**
+     * The number of chargeable days in the first n days of two consecutive weeks (starting on Monday).
+     */
+    private final int[] chargeableDaysPrefix = new int[2 * DAYS_PER_WEEK + 1];
+
+    /**
+     * The sorted epoch days of the holidays which fall on a chargeable day of the week.
+     */
+    private final long[] holidays;
+
+    /**
+     * Creates a calculator for the default schedule, which charges every day except Sunday and has no holidays.
+     */
+    public ChargeableMinutesCalculator(LocalTime startTime, LocalTime endTime) {
+        this(startTime, endTime, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), Set.of());
+    }
+
+    public ChargeableMinutesCalculator(LocalTime startTime, LocalTime endTime, Set<DayOfWeek> chargeableDays,
+                                       Collection<LocalDate> holidays) {
+        // a minute which starts exactly at the start time is chargeable, hence the start of the period is moved back by 1 ms
+        this.periodStart = startTime.minus(Duration.ofMillis(1));
+        this.periodEnd = endTime;
+
+        for (var day = 0; day < chargeableDaysPrefix.length - 1; day++) {
+            var dayOfWeek = DayOfWeek.MONDAY.plus(day);
+            chargeableDaysPrefix[day + 1] = chargeableDaysPrefix[day] + (chargeableDays.contains(dayOfWeek) ? 1 : 0);
+        }
+
+        // holidays on days which are not chargeable anyway don't need to be subtracted
+        this.holidays = holidays.stream()
+                .filter(holiday -> chargeableDays.contains(holiday.getDayOfWeek()))
+                .mapToLong(LocalDate::toEpochDay)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    public long calculate(LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        // if the session is empty, or the parking period is empty, nothing is chargeable
+        if (!startDateTime.isBefore(endDateTime) || !periodStart.isBefore(periodEnd)) {
+            return 0L;
+        }
+
+        var firstDate = startDateTime.toLocalDate();
+        var lastDate = endDateTime.toLocalDate();
+
+        // the session may start and end on the same day
+        if (firstDate.equals(lastDate)) {
+            return calculateForDay(startDateTime, endDateTime, firstDate);
+        }
+
+        // the first and last day of the session may be partial days, so they are calculated on their own
+        var totalChargeableMinutes = calculateForDay(startDateTime, endDateTime, firstDate)
+                + calculateForDay(startDateTime, endDateTime, lastDate);
+
+        // every day in between is fully covered by the session, so every chargeable day adds the same number of minutes
+        var firstFullDate = firstDate.plusDays(1);
+        var fullChargeableDays = countChargeableDays(firstFullDate.toEpochDay(), lastDate.toEpochDay());
+        if (fullChargeableDays > 0) {
+            totalChargeableMinutes += fullChargeableDays * calculateForPeriod(startDateTime, endDateTime, firstFullDate);
+        }
+
+        return totalChargeableMinutes;
+    }
+
+    private long calculateForDay(LocalDateTime startDateTime, LocalDateTime endDateTime, LocalDate date) {
+        if (countChargeableDays(date.toEpochDay(), date.toEpochDay() + 1) == 0) {
+            return 0L;
+        }
+
+        return calculateForPeriod(startDateTime, endDateTime, date);
+    }
+
+    // The minutes of the session start at (startDateTime + k minutes) for every k >= 0 for which that is before the
+    // endDateTime. This counts the values of k for which the minute also starts within the parking period of the date.
+    private long calculateForPeriod(LocalDateTime startDateTime, LocalDateTime endDateTime, LocalDate date) {
+        var nanosToPeriodStart = nanosBetween(startDateTime, date.atTime(periodStart));
+        var nanosToPeriodEnd = nanosBetween(startDateTime, date.atTime(periodEnd));
+        var nanosToSessionEnd = nanosBetween(startDateTime, endDateTime);
+
+        var firstMinute = Math.max(0L, Math.floorDiv(nanosToPeriodStart, NANOS_PER_MINUTE) + 1);
+        var endMinute = Math.min(Math.ceilDiv(nanosToPeriodEnd, NANOS_PER_MINUTE), Math.ceilDiv(nanosToSessionEnd, NANOS_PER_MINUTE));
+
+        return Math.max(0L, endMinute - firstMinute);
+    }
+
+    // Counts the chargeable days from the given epoch day (inclusive) until the given epoch day (exclusive).
+    private long countChargeableDays(long fromEpochDay, long untilEpochDay) {
+        var days = untilEpochDay - fromEpochDay;
+
+        // whole weeks all have the same number of chargeable days, the remaining days are looked up in the prefix
+        var firstDayOfWeek = LocalDate.ofEpochDay(fromEpochDay).getDayOfWeek().ordinal();
+        var remainingDays = (int) (days % DAYS_PER_WEEK);
+        var chargeableDays = (days / DAYS_PER_WEEK) * chargeableDaysPrefix[DAYS_PER_WEEK]
+                + chargeableDaysPrefix[firstDayOfWeek + remainingDays] - chargeableDaysPrefix[firstDayOfWeek];
+
+        return chargeableDays - (indexOfHoliday(untilEpochDay) - indexOfHoliday(fromEpochDay));
+    }
+
+    // Finds the index of the first holiday on or after the given epoch day.
+    private int indexOfHoliday(long epochDay) {
+        var index = Arrays.binarySearch(holidays, epochDay);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static long nanosBetween(LocalDateTime from, LocalDateTime to) {
+        var seconds = to.toEpochSecond(ZoneOffset.UTC) - from.toEpochSecond(ZoneOffset.UTC);
+        return seconds * NANOS_PER_SECOND + (to.getNano() - from.getNano());
+    }
+}
@@ -0,0 +1,59 @@
+package abn.parking.core.tariff;
+
+import abn.parking.core.configuration.ParkingScheduleProperties;
+import abn.parking.core.configuration.ParkingScheduleProperties.ScheduleTime;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The parking schedule of every street, compiled from the {@link ParkingScheduleProperties}.
+ * <p>
+ * The calendar is immutable: the zone, the times and the holidays are parsed and sorted once when the calendar is
+ * compiled, so billing a session only has to look up the calculator of the street.
+ */
+public class TariffCalendar {
+    private final ZoneId zoneId;
+    private final ChargeableMinutesCalculator defaultCalculator;
+    private final Map<String, ChargeableMinutesCalculator> streetCalculators;
+
+    private TariffCalendar(ZoneId zoneId, ChargeableMinutesCalculator defaultCalculator,
+                           Map<String, ChargeableMinutesCalculator> streetCalculators) {
+        this.zoneId = zoneId;
+        this.defaultCalculator = defaultCalculator;
+        this.streetCalculators = Map.copyOf(streetCalculators);
+    }
+
+    public static TariffCalendar compile(ParkingScheduleProperties properties) {
+        var zoneId = ZoneId.of(properties.getZoneId());
+        var defaultCalculator = new ChargeableMinutesCalculator(toLocalTime(properties.getStartTime()),
+                toLocalTime(properties.getEndTime()), properties.getChargeableDays(), properties.getHolidays());
+
+        // every street schedule falls back to the default schedule for the settings it doesn't override
+        var streetCalculators = new HashMap<String, ChargeableMinutesCalculator>();
+        properties.getStreets().forEach((street, schedule) -> streetCalculators.put(street, new ChargeableMinutesCalculator(
+                toLocalTime(Objects.requireNonNullElse(schedule.getStartTime(), properties.getStartTime())),
+                toLocalTime(Objects.requireNonNullElse(schedule.getEndTime(), properties.getEndTime())),
+                Objects.requireNonNullElse(schedule.getChargeableDays(), properties.getChargeableDays()),
+                properties.getHolidays())));
+
+        return new TariffCalendar(zoneId, defaultCalculator, streetCalculators);
+    }
+
+    public long calculateChargeableMinutes(String street, Instant startInstant, Instant endInstant) {
+        // Convert Instants to LocalDateTimes in the zone of the schedule
+        var startDateTime = LocalDateTime.ofInstant(startInstant, zoneId);
+        var endDateTime = LocalDateTime.ofInstant(endInstant, zoneId);
+
+        return streetCalculators.getOrDefault(street, defaultCalculator).calculate(startDateTime, endDateTime);
+    }
+
+    private static LocalTime toLocalTime(ScheduleTime scheduleTime) {
+        return LocalTime.of(scheduleTime.getHour(), scheduleTime.getMinute());
+    }
+}
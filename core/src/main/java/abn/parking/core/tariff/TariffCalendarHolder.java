@@ -0,0 +1,37 @@
+package abn.parking.core.tariff;
+
+import abn.parking.core.configuration.ParkingScheduleProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link TariffCalendar}.
+ * <p>
+ * The calendar is compiled once at startup. When the schedule changes, a new calendar is compiled and swapped in
+ * atomically, so sessions which are being billed keep using the calendar they started with and never have to wait.
+ */
+@Component
+@Slf4j
+public class TariffCalendarHolder {
+    private final ParkingScheduleProperties parkingScheduleProperties;
+    private final AtomicReference<TariffCalendar> calendar;
+
+    public TariffCalendarHolder(ParkingScheduleProperties parkingScheduleProperties) {
+        this.parkingScheduleProperties = parkingScheduleProperties;
+        this.calendar = new AtomicReference<>(TariffCalendar.compile(parkingScheduleProperties));
+    }
+
+    public TariffCalendar getCalendar() {
+        return calendar.get();
+    }
+
+    /**
+     * Compiles the calendar again from the (changed) parking schedule properties and replaces the current calendar.
+     */
+    public void reload() {
+        calendar.set(TariffCalendar.compile(parkingScheduleProperties));
+        log.info("Reloaded tariff calendar | Streets = {}", parkingScheduleProperties.getStreets().keySet());
+    }
+}
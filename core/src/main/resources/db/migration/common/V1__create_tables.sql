@@ -3,7 +3,8 @@ create table parking_rate
     id        bigserial primary key,
     fine_rate integer      not null,
     rate      integer      not null,
-    street    varchar(255) not null unique
+    street    varchar(255) not null unique,
+    version   bigint       not null default 0
 );
 
 create table parking_session
@@ -15,9 +16,12 @@ create table parking_session
     street        varchar(255)                not null
 );
 
+-- the increment must match the allocation size of the id generator of the entity
+create sequence vehicle_observation_id_seq increment by 50;
+
 create table vehicle_observation
 (
-    id                  bigserial primary key,
+    id                  bigint default nextval('vehicle_observation_id_seq') primary key,
     verified            boolean                     not null,
     observation_instant timestamp(6) with time zone not null,
     license             varchar(255)                not null,
@@ -36,3 +40,8 @@ create table parking_invoice
         constraint parking_session_fk references parking_session
 );
 
+create table verification_checkpoint
+(
+    name    varchar(64) primary key,
+    last_id bigint      not null
+);
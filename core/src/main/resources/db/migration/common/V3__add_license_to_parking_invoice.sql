@@ -0,0 +1,15 @@
+-- the license of the session or observation of an invoice is copied to the invoice, so that the invoices of a license
+-- can be found with a single index lookup
+alter table parking_invoice add column license varchar(255);
+
+update parking_invoice i
+set license = coalesce(
+        (select s.license from parking_session s where s.id = i.session_id),
+        (select o.license from vehicle_observation o where o.id = i.observation_id));
+
+alter table parking_invoice alter column license set not null;
+
+create index parking_invoice_license_idx on parking_invoice (license);
+
+-- the invoices of a license were found through the observations, which is no longer needed
+drop index vehicle_observation_license_idx;
@@ -0,0 +1,17 @@
+-- the outstanding balance of every license, which is kept up to date when invoices are created or paid, so that it
+-- can be read without summing all invoices of the license
+create table license_balance
+(
+    license                varchar(255) primary key,
+    open_balance           bigint not null,
+    unpaid_count           bigint not null,
+    latest_invoice_instant timestamp(6) with time zone
+);
+
+insert into license_balance (license, open_balance, unpaid_count, latest_invoice_instant)
+select license,
+       coalesce(sum(case when paid = false then amount end), 0),
+       count(case when paid = false then 1 end),
+       max(invoice_instant)
+from parking_invoice
+group by license;
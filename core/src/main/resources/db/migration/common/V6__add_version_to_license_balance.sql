@@ -0,0 +1,3 @@
+-- the version of a license balance is incremented whenever an invoice of the license is created or paid, so that
+-- clients can find out whether the invoices of a license have changed without reading them
+alter table license_balance add column version bigint not null default 0;
@@ -0,0 +1,21 @@
+-- verified observations without a fine, and sessions which were stopped long ago without an invoice, are moved to the
+-- archive tables by RetentionJob, so that they are no longer in the tables and indexes of the hot paths. As rows with
+-- an invoice are never archived, the invoices keep referencing their observations and sessions.
+create table vehicle_observation_archive
+(
+    id                  bigint primary key,
+    observation_instant timestamp(6) with time zone not null,
+    license             varchar(255)                not null,
+    street              varchar(255)                not null,
+    archived_instant    timestamp(6) with time zone not null
+);
+
+create table parking_session_archive
+(
+    id               bigint primary key,
+    start_instant    timestamp(6) with time zone not null,
+    end_instant      timestamp(6) with time zone not null,
+    license          varchar(255)                not null,
+    street           varchar(255)                not null,
+    archived_instant timestamp(6) with time zone not null
+);
@@ -0,0 +1,42 @@
+-- the instant at which an invoice was paid, so that payments can be picked up incrementally by StreetDailyRollupJob.
+-- Invoices which were already paid are considered paid at the instant at which they were created.
+alter table parking_invoice add column paid_instant timestamp(6) with time zone;
+
+update parking_invoice
+set paid_instant = invoice_instant
+where paid = true;
+
+-- the revenue, fines, payments and sessions of every street per day (UTC), which are read by the admin reports instead
+-- of the invoices and sessions. Invoices and payments are counted on the day of the invoice, sessions on the day on
+-- which they were stopped.
+create table street_daily_rollup
+(
+    id              bigserial primary key,
+    street          varchar(255) not null,
+    rollup_day      date         not null,
+    invoice_count   bigint       not null,
+    invoice_amount  bigint       not null,
+    fine_count      bigint       not null,
+    fine_amount     bigint       not null,
+    paid_count      bigint       not null,
+    paid_amount     bigint       not null,
+    session_count   bigint       not null,
+    session_minutes bigint       not null,
+    unique (street, rollup_day)
+);
+
+-- the instant up to which the invoices, payments and sessions have been added to the rollups. The watermark is
+-- initialized by StreetDailyRollupJob from the earliest invoice or session when it is null.
+create table rollup_watermark
+(
+    name              varchar(255) primary key,
+    watermark_instant timestamp(6) with time zone
+);
+
+insert into rollup_watermark (name, watermark_instant)
+values ('street_daily_rollup', null);
+
+-- the rows of a period are found by these indexes, instead of by scanning the tables
+create index parking_invoice_invoice_instant_idx on parking_invoice (invoice_instant);
+create index parking_invoice_paid_instant_idx on parking_invoice (paid_instant);
+create index parking_session_end_instant_idx on parking_session (end_instant);
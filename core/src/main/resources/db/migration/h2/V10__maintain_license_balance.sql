@@ -0,0 +1,79 @@
+-- The balances of the licenses are kept up to date by triggers on parking_invoice, like on Postgres (see the Postgres
+-- migration). H2 has no transition tables, so the balance is updated for every row. H2 compiles the triggers from their
+-- source, of which the rows hold the columns of parking_invoice in the order of the table: id, paid, amount,
+-- invoice_instant, observation_id, session_id, license and paid_instant.
+
+create trigger parking_invoice_paid_instant
+    before insert, update
+    on parking_invoice
+    for each row
+as $$
+org.h2.api.Trigger create() {
+    return (connection, oldRow, newRow) -> {
+        if (Boolean.TRUE.equals(newRow[1]) && newRow[7] == null) {
+            newRow[7] = java.time.OffsetDateTime.now();
+        } else if (Boolean.FALSE.equals(newRow[1])) {
+            newRow[7] = null;
+        }
+    };
+}
+$$;
+
+create trigger license_balance_maintain
+    after insert, update, delete
+    on parking_invoice
+    for each row
+as $$
+org.h2.api.Trigger create() {
+    return (connection, oldRow, newRow) -> {
+        if (oldRow != null && newRow != null && oldRow[6].equals(newRow[6])) {
+            apply(connection, (String) newRow[6], unpaidAmount(newRow) - unpaidAmount(oldRow),
+                    unpaidCount(newRow) - unpaidCount(oldRow), null);
+            return;
+        }
+        if (oldRow != null) {
+            apply(connection, (String) oldRow[6], -unpaidAmount(oldRow), -unpaidCount(oldRow), null);
+        }
+        if (newRow != null) {
+            apply(connection, (String) newRow[6], unpaidAmount(newRow), unpaidCount(newRow), newRow[3]);
+        }
+    };
+}
+
+static long unpaidAmount(Object[] row) {
+    return Boolean.FALSE.equals(row[1]) ? ((Number) row[2]).longValue() : 0;
+}
+
+static long unpaidCount(Object[] row) {
+    return Boolean.FALSE.equals(row[1]) ? 1 : 0;
+}
+
+// Adds to the balance of the license, or creates it (and adds to it after all when another transaction created it in
+// the meantime). The latest invoice instant only grows when an invoice is inserted, and is looked up again otherwise.
+static void apply(java.sql.Connection connection, String license, long amount, long unpaidCount,
+                  Object insertedInvoiceInstant) throws java.sql.SQLException {
+    var latest = insertedInvoiceInstant != null ? "greatest(latest_invoice_instant, ?)"
+            : "(select max(i.invoice_instant) from parking_invoice i where i.license = ?)";
+    try (var update = connection.prepareStatement("update license_balance set open_balance = open_balance + ?, "
+            + "unpaid_count = unpaid_count + ?, latest_invoice_instant = " + latest + ", version = version + 1 where license = ?")) {
+        update.setLong(1, amount);
+        update.setLong(2, unpaidCount);
+        update.setObject(3, insertedInvoiceInstant != null ? insertedInvoiceInstant : license);
+        update.setString(4, license);
+        if (update.executeUpdate() > 0 || insertedInvoiceInstant == null) {
+            return;
+        }
+
+        try (var insert = connection.prepareStatement("insert into license_balance "
+                + "(license, open_balance, unpaid_count, latest_invoice_instant, version) values (?, ?, ?, ?, 1)")) {
+            insert.setString(1, license);
+            insert.setLong(2, amount);
+            insert.setLong(3, unpaidCount);
+            insert.setObject(4, insertedInvoiceInstant);
+            insert.executeUpdate();
+        } catch (java.sql.SQLIntegrityConstraintViolationException e) {
+            update.executeUpdate();
+        }
+    }
+}
+$$;
@@ -0,0 +1,14 @@
+-- H2 doesn't support partial indexes, so the columns of the conditions of the partial indexes on Postgres are added
+-- to the indexes instead. Foreign keys are indexed by H2.
+
+-- claiming unverified observations
+create index vehicle_observation_unverified_idx on vehicle_observation (verified, id);
+
+-- looking up the invoices of a license, through the observations
+create index vehicle_observation_license_idx on vehicle_observation (license);
+
+-- looking up the session which covers an observation, and the sessions of a license
+create index parking_session_license_street_start_idx on parking_session (license, street, start_instant);
+
+-- looking up the open session of a license
+create index parking_session_open_license_idx on parking_session (license, end_instant);
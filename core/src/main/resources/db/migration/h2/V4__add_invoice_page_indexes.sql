@@ -0,0 +1,7 @@
+-- pages of invoices of a license are read newest first, with a keyset on (invoice_instant, id), so the license index
+-- is replaced by indexes in that order (H2 doesn't support partial indexes, so paid is part of the second index)
+drop index parking_invoice_license_idx;
+
+create index parking_invoice_license_instant_idx on parking_invoice (license, invoice_instant desc, id desc);
+
+create index parking_invoice_paid_license_instant_idx on parking_invoice (license, paid, invoice_instant desc, id desc);
@@ -0,0 +1,73 @@
+-- The tables which let sessions be looked up within their partitions on Postgres (see the Postgres migration), so that
+-- the same code runs on H2. The primary key of parking_session_open makes sure that a license only has one open
+-- session, like on Postgres.
+
+create table parking_session_open
+(
+    license       varchar(255) primary key,
+    session_id    bigint                      not null,
+    street        varchar(255)                not null,
+    start_instant timestamp(6) with time zone not null
+);
+
+insert into parking_session_open (license, session_id, street, start_instant)
+select license, id, street, start_instant
+from parking_session
+where end_instant is null;
+
+create table parking_session_longest
+(
+    duration_seconds bigint not null
+);
+
+insert into parking_session_longest (duration_seconds)
+select coalesce(max(datediff(second, start_instant, end_instant)) + 1, 0)
+from parking_session
+where end_instant is not null;
+
+-- Keeps parking_session_open and parking_session_longest up to date for every write of a session, like the trigger on
+-- Postgres. H2 compiles the trigger from its source, of which the rows hold the columns of parking_session in the
+-- order of the table: id, end_instant, start_instant, license and street.
+create trigger parking_session_open_guard
+    after insert, update, delete
+    on parking_session
+    for each row
+as $$
+org.h2.api.Trigger create() {
+    return (connection, oldRow, newRow) -> {
+        if (oldRow != null && oldRow[1] == null) {
+            try (var statement = connection.prepareStatement("delete from parking_session_open where session_id = ?")) {
+                statement.setObject(1, oldRow[0]);
+                statement.executeUpdate();
+            }
+        }
+        if (newRow != null && newRow[1] == null) {
+            // fails with a unique violation when the license already has an open session
+            try (var statement = connection.prepareStatement(
+                    "insert into parking_session_open (license, session_id, street, start_instant) values (?, ?, ?, ?)")) {
+                statement.setObject(1, newRow[3]);
+                statement.setObject(2, newRow[0]);
+                statement.setObject(3, newRow[4]);
+                statement.setObject(4, newRow[2]);
+                statement.executeUpdate();
+            }
+        }
+        if (newRow != null && newRow[1] != null) {
+            var durationSeconds = java.time.Duration.between((java.time.OffsetDateTime) newRow[2],
+                    (java.time.OffsetDateTime) newRow[1]).toSeconds() + 1;
+            try (var longest = connection.createStatement();
+                 var resultSet = longest.executeQuery("select duration_seconds from parking_session_longest")) {
+                if (resultSet.next() && durationSeconds <= resultSet.getLong(1)) {
+                    return;
+                }
+            }
+            try (var statement = connection.prepareStatement(
+                    "update parking_session_longest set duration_seconds = ? where duration_seconds < ?")) {
+                statement.setLong(1, durationSeconds);
+                statement.setLong(2, durationSeconds);
+                statement.executeUpdate();
+            }
+        }
+    };
+}
+$$;
@@ -0,0 +1,107 @@
+-- The balances of the licenses are kept up to date by triggers on parking_invoice, so that every write of an invoice
+-- changes the balance (and its version) of its license, also the writes of the admin application and manual
+-- statements.
+--
+-- The triggers are statement triggers, which update every balance once per statement, with the sums of the invoices of
+-- the license in the transition tables of the statement. Transition tables can only be used by triggers of a single
+-- event, so there is a trigger per event. The latest invoice instant only grows when invoices are inserted, and is
+-- looked up again when invoices are changed or deleted.
+
+create function license_balance_maintain() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'INSERT' then
+        insert into license_balance (license, open_balance, unpaid_count, latest_invoice_instant, version)
+        select license,
+               coalesce(sum(amount) filter (where paid = false), 0),
+               count(*) filter (where paid = false),
+               max(invoice_instant),
+               1
+        from new_invoices
+        group by license
+        order by license
+        on conflict (license) do update set
+            open_balance = license_balance.open_balance + excluded.open_balance,
+            unpaid_count = license_balance.unpaid_count + excluded.unpaid_count,
+            latest_invoice_instant = greatest(license_balance.latest_invoice_instant, excluded.latest_invoice_instant),
+            version = license_balance.version + 1;
+    elsif tg_op = 'UPDATE' then
+        insert into license_balance (license, open_balance, unpaid_count, latest_invoice_instant, version)
+        select license,
+               sum(amount),
+               sum(unpaid_count),
+               (select max(i.invoice_instant) from parking_invoice i where i.license = changes.license),
+               1
+        from (select license, case when paid = false then amount else 0 end as amount,
+                     case when paid = false then 1 else 0 end as unpaid_count
+              from new_invoices
+              union all
+              select license, case when paid = false then -amount else 0 end,
+                     case when paid = false then -1 else 0 end
+              from old_invoices) changes
+        group by license
+        order by license
+        on conflict (license) do update set
+            open_balance = license_balance.open_balance + excluded.open_balance,
+            unpaid_count = license_balance.unpaid_count + excluded.unpaid_count,
+            latest_invoice_instant = excluded.latest_invoice_instant,
+            version = license_balance.version + 1;
+    else
+        update license_balance b
+        set open_balance           = b.open_balance - d.amount,
+            unpaid_count           = b.unpaid_count - d.unpaid_count,
+            latest_invoice_instant = (select max(i.invoice_instant) from parking_invoice i where i.license = b.license),
+            version                = b.version + 1
+        from (select license,
+                     coalesce(sum(amount) filter (where paid = false), 0) as amount,
+                     count(*) filter (where paid = false)                 as unpaid_count
+              from old_invoices
+              group by license) d
+        where b.license = d.license;
+    end if;
+    return null;
+end
+$$;
+
+create trigger license_balance_insert
+    after insert
+    on parking_invoice
+    referencing new table as new_invoices
+    for each statement
+execute function license_balance_maintain();
+
+create trigger license_balance_update
+    after update
+    on parking_invoice
+    referencing old table as old_invoices new table as new_invoices
+    for each statement
+execute function license_balance_maintain();
+
+create trigger license_balance_delete
+    after delete
+    on parking_invoice
+    referencing old table as old_invoices
+    for each statement
+execute function license_balance_maintain();
+
+-- Invoices which are paid without a paid instant (e.g. in the admin application) are paid at the start of the
+-- transaction, and invoices which are no longer paid lose their paid instant.
+create function parking_invoice_paid_instant() returns trigger
+    language plpgsql as
+$$
+begin
+    if new.paid = true and new.paid_instant is null then
+        new.paid_instant := now();
+    elsif new.paid = false then
+        new.paid_instant := null;
+    end if;
+    return new;
+end
+$$;
+
+create trigger parking_invoice_paid_instant
+    before insert or update of paid, paid_instant
+    on parking_invoice
+    for each row
+execute function parking_invoice_paid_instant();
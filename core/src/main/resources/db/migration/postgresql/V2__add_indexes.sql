@@ -0,0 +1,15 @@
+-- claiming unverified observations (only the few unverified observations are indexed)
+create index vehicle_observation_unverified_idx on vehicle_observation (id) where verified = false;
+
+-- looking up the invoices of a license, through the observations
+create index vehicle_observation_license_idx on vehicle_observation (license);
+
+-- looking up the session which covers an observation, and the sessions of a license
+create index parking_session_license_street_start_idx on parking_session (license, street, start_instant);
+
+-- looking up the open session of a license, a license can only have one open session
+create unique index parking_session_open_license_idx on parking_session (license) where end_instant is null;
+
+-- foreign keys are not indexed by Postgres
+create index parking_invoice_observation_idx on parking_invoice (observation_id);
+create index parking_invoice_session_idx on parking_invoice (session_id);
@@ -0,0 +1,8 @@
+-- pages of invoices of a license are read newest first, with a keyset on (invoice_instant, id), so the license index
+-- is replaced by indexes in that order
+drop index parking_invoice_license_idx;
+
+create index parking_invoice_license_instant_idx on parking_invoice (license, invoice_instant desc, id desc);
+
+-- most pages are filtered on unpaid invoices, which are only a small part of all invoices
+create index parking_invoice_unpaid_license_instant_idx on parking_invoice (license, invoice_instant desc, id desc) where paid = false;
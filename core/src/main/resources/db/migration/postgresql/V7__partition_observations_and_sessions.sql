@@ -0,0 +1,163 @@
+-- vehicle_observation and parking_session are partitioned by month, on observation_instant and start_instant, so that
+-- queries for a period only touch the partitions of that period, and old partitions can be detached (see
+-- PartitionMaintenance). The existing tables are attached as the partitions for everything before the first month,
+-- and the partitions for the current and the next months are created by PartitionMaintenance at startup.
+--
+-- Unique indexes of partitioned tables must include the partition key, so:
+-- * the primary keys become (id, observation_instant) and (id, start_instant), ids are still unique as they are
+--   taken from sequences
+-- * the invoices can no longer reference the observations and sessions with foreign keys
+-- * the license of every open session is kept in parking_session_open by a trigger, of which the primary key makes
+--   sure that a license only has one open session
+--
+-- Lookups of sessions by license can't be limited to the partitions of parking_session, as the partition key is the
+-- start instant. So:
+-- * parking_session_open also keeps the id, street and start instant of the open session of every license, so that
+--   stopping a session only touches the partition of that session
+-- * parking_session_longest keeps the duration (in seconds, rounded up) of the longest stopped session, so that a
+--   stopped session which covers an observation is only searched in the partitions from the observation instant
+--   minus that duration
+
+alter table parking_invoice drop constraint vehicle_observation_fk;
+alter table parking_invoice drop constraint parking_session_fk;
+
+-- vehicle_observation
+
+alter table vehicle_observation rename to vehicle_observation_legacy;
+alter table vehicle_observation_legacy rename constraint vehicle_observation_pkey to vehicle_observation_legacy_pkey;
+alter index vehicle_observation_unverified_idx rename to vehicle_observation_legacy_unverified_idx;
+
+create table vehicle_observation
+(
+    id                  bigint default nextval('vehicle_observation_id_seq') not null,
+    verified            boolean                                          not null,
+    observation_instant timestamp(6) with time zone                      not null,
+    license             varchar(255)                                     not null,
+    street              varchar(255)                                     not null,
+    primary key (id, observation_instant)
+) partition by range (observation_instant);
+
+create index vehicle_observation_unverified_idx on vehicle_observation (id) where verified = false;
+
+-- rows which are not in the range of any partition (e.g. observations far in the future) end up in the default partition
+create table vehicle_observation_default partition of vehicle_observation default;
+
+-- parking_session
+
+alter table parking_session rename to parking_session_legacy;
+alter table parking_session_legacy rename constraint parking_session_pkey to parking_session_legacy_pkey;
+alter index parking_session_license_street_start_idx rename to parking_session_legacy_license_street_start_idx;
+alter index parking_session_open_license_idx rename to parking_session_legacy_open_license_idx;
+
+create table parking_session
+(
+    id            bigint default nextval('parking_session_id_seq') not null,
+    end_instant   timestamp(6) with time zone,
+    start_instant timestamp(6) with time zone                  not null,
+    license       varchar(255)                                 not null,
+    street        varchar(255)                                 not null,
+    primary key (id, start_instant)
+) partition by range (start_instant);
+
+-- the sequence was owned by the legacy table, which would drop it when the legacy table is dropped
+alter sequence parking_session_id_seq owned by parking_session.id;
+
+create index parking_session_license_street_start_idx on parking_session (license, street, start_instant);
+create index parking_session_open_license_idx on parking_session (license) where end_instant is null;
+
+create table parking_session_default partition of parking_session default;
+
+-- the legacy tables become the partitions for everything before the first month (or after the latest row, if that is
+-- later). The check constraints let the attach skip scanning the tables.
+do
+$$
+    declare
+        observations_end timestamp with time zone;
+        sessions_end     timestamp with time zone;
+    begin
+        select greatest(date_trunc('month', now() at time zone 'UTC') at time zone 'UTC',
+                        date_trunc('month', max(observation_instant) at time zone 'UTC') at time zone 'UTC' + interval '1 month')
+        into observations_end
+        from vehicle_observation_legacy;
+
+        execute format('alter table vehicle_observation_legacy add constraint vehicle_observation_legacy_range check (observation_instant < %L)',
+                       observations_end);
+        execute format('alter table vehicle_observation attach partition vehicle_observation_legacy for values from (minvalue) to (%L)',
+                       observations_end);
+        alter table vehicle_observation_legacy drop constraint vehicle_observation_legacy_range;
+
+        select greatest(date_trunc('month', now() at time zone 'UTC') at time zone 'UTC',
+                        date_trunc('month', max(start_instant) at time zone 'UTC') at time zone 'UTC' + interval '1 month')
+        into sessions_end
+        from parking_session_legacy;
+
+        execute format('alter table parking_session_legacy add constraint parking_session_legacy_range check (start_instant < %L)',
+                       sessions_end);
+        execute format('alter table parking_session attach partition parking_session_legacy for values from (minvalue) to (%L)',
+                       sessions_end);
+        alter table parking_session_legacy drop constraint parking_session_legacy_range;
+    end
+$$;
+
+-- the longest stopped session
+
+create table parking_session_longest
+(
+    duration_seconds bigint not null
+);
+
+insert into parking_session_longest (duration_seconds)
+select coalesce(max(floor(extract(epoch from end_instant - start_instant))) + 1, 0)
+from parking_session
+where end_instant is not null;
+
+-- one open session per license
+
+create table parking_session_open
+(
+    license       varchar(255) primary key,
+    session_id    bigint                      not null,
+    street        varchar(255)                not null,
+    start_instant timestamp(6) with time zone not null
+);
+
+insert into parking_session_open (license, session_id, street, start_instant)
+select license, id, street, start_instant
+from parking_session
+where end_instant is null;
+
+-- Keeps parking_session_open and parking_session_longest up to date for every write of a session, also for the writes
+-- of the admin application and manual statements. A session which is no longer open (because it was stopped, deleted
+-- or changed) is removed first, and then the session is added again when it is (still) open. The longest duration is
+-- read before it is updated, so that only the rare longer sessions write (and lock) its row.
+create function parking_session_open_guard() returns trigger
+    language plpgsql as
+$$
+declare
+    session_seconds bigint;
+begin
+    if tg_op in ('UPDATE', 'DELETE') and old.end_instant is null then
+        delete from parking_session_open where session_id = old.id;
+    end if;
+    if tg_op in ('INSERT', 'UPDATE') and new.end_instant is null then
+        -- fails with a unique violation when the license already has an open session
+        insert into parking_session_open (license, session_id, street, start_instant)
+        values (new.license, new.id, new.street, new.start_instant);
+    end if;
+    if tg_op in ('INSERT', 'UPDATE') and new.end_instant is not null then
+        session_seconds := floor(extract(epoch from new.end_instant - new.start_instant)) + 1;
+        if session_seconds > (select duration_seconds from parking_session_longest) then
+            update parking_session_longest set duration_seconds = session_seconds
+            where duration_seconds < session_seconds;
+        end if;
+    end if;
+    return null;
+end
+$$;
+
+create trigger parking_session_open_guard
+    after insert or update or delete
+    on parking_session
+    for each row
+execute function parking_session_open_guard();
+
@@ -0,0 +1,114 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.repository.VehicleObservationRepository;
+import abn.parking.core.service.ObservationsQueue;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static io.restassured.RestAssured.given;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+
+// Observations are ingested asynchronously, through a queue with room for 3 observations. The writer waits a second
+// for more observations before it writes a batch, so the queue stays full for a while.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "observations.ingestion.mode=async",
+        "observations.ingestion.queue-capacity=3",
+        "observations.ingestion.linger=1000"})
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class AsyncObservationsTests {
+
+    private static final String ADD_OBSERVATIONS_REQUEST = """
+            {
+            	"observations": [
+            		{
+            			"license": "DDD999",
+            			"street": "Europaplein",
+            			"observationInstant": "2021-01-01T12:00:00Z"
+            		},
+            		{
+            			"license": "EEE999",
+            			"street": "Europaplein",
+            			"observationInstant": "2021-01-01T12:00:00Z"
+            		}
+            	]
+            }
+            """;
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private VehicleObservationRepository vehicleObservationRepository;
+
+    @Autowired
+    private ObservationsQueue observationsQueue;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+    }
+
+    @Test
+    void givenRoomInQueue_whenAddObservations_then202AndObservationsWrittenInBackground() {
+        var requestSpecification = given().body(ADD_OBSERVATIONS_REQUEST).contentType(ContentType.JSON);
+
+        var response = requestSpecification.when().post("/observations");
+
+        response.then().statusCode(202);
+        await().atMost(Duration.ofSeconds(10)).until(vehicleObservationRepository::count, equalTo(2L));
+    }
+
+    @Test
+    void givenFullQueue_whenAddObservations_then429WithRetryAfter() {
+        given().body(ADD_OBSERVATIONS_REQUEST).contentType(ContentType.JSON).when().post("/observations").then().statusCode(202);
+        var requestSpecification = given().body(ADD_OBSERVATIONS_REQUEST).contentType(ContentType.JSON);
+
+        var response = requestSpecification.when().post("/observations");
+
+        response.then().statusCode(429).header("Retry-After", "5");
+        // only the observations of the first request are written
+        await().atMost(Duration.ofSeconds(10)).until(vehicleObservationRepository::count, equalTo(2L));
+    }
+
+    @Test
+    void givenMoreObservationsThanQueueCapacity_whenAddObservations_then413() {
+        var requestSpecification = given().body(observationsRequest("Europaplein", 4)).contentType(ContentType.JSON);
+
+        var response = requestSpecification.when().post("/observations");
+
+        response.then().statusCode(413);
+    }
+
+    @Test
+    void givenObservationRejectedByDatabase_whenAddObservations_thenOnlyRejectedObservationDroppedAndQueueEmptied() {
+        // the street is longer than the column, so the database rejects the observation
+        given().body(observationsRequest("X".repeat(300), 1)).contentType(ContentType.JSON).when().post("/observations").then().statusCode(202);
+        given().body(ADD_OBSERVATIONS_REQUEST).contentType(ContentType.JSON).when().post("/observations").then().statusCode(202);
+
+        await().atMost(Duration.ofSeconds(10)).until(vehicleObservationRepository::count, equalTo(2L));
+        await().atMost(Duration.ofSeconds(10)).until(observationsQueue::getDepth, equalTo(0));
+        // the room taken by the rejected observation is given back
+        given().body(ADD_OBSERVATIONS_REQUEST).contentType(ContentType.JSON).when().post("/observations").then().statusCode(202);
+        await().atMost(Duration.ofSeconds(10)).until(vehicleObservationRepository::count, equalTo(4L));
+    }
+
+    private static String observationsRequest(String street, int count) {
+        var observation = """
+                {"license": "FFF999", "street": "%s", "observationInstant": "2021-01-01T12:00:00Z"}""".formatted(street);
+        return "{\"observations\": [" + String.join(",", Collections.nCopies(count, observation)) + "]}";
+    }
+}
@@ -1,7 +1,18 @@
 package abn.parking.core;
 
+import abn.parking.core.configuration.LicenseBalanceProperties;
+import abn.parking.core.configuration.ObservationsProcessProperties.VerificationMode;
 import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.entity.ParkingInvoice;
+import abn.parking.core.entity.VehicleObservation;
+import abn.parking.core.entity.VerificationCheckpoint;
+import abn.parking.core.repository.ParkingInvoiceRepository;
+import abn.parking.core.repository.ParkingRateRepository;
+import abn.parking.core.repository.VehicleObservationRepository;
+import abn.parking.core.repository.VerificationCheckpointRepository;
+import abn.parking.core.service.LicenseBalanceCache;
 import abn.parking.core.service.ObservationsService;
+import abn.parking.core.service.ParkingRateCache;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,10 +21,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -31,9 +51,37 @@ class CoreApplicationTests {
     @Autowired
     private ObservationsService observationsService;
 
+    // the parking rates are inserted before every test, so the cache needs to pick them up before the test starts
+    @Autowired
+    private ParkingRateCache parkingRateCache;
+
+    // the balances are deleted after every test, so the cache needs to forget them before the next test starts
+    @Autowired
+    private LicenseBalanceCache licenseBalanceCache;
+
+    @Autowired
+    private LicenseBalanceProperties licenseBalanceProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ParkingRateRepository parkingRateRepository;
+
+    @Autowired
+    private ParkingInvoiceRepository parkingInvoiceRepository;
+
+    @Autowired
+    private VehicleObservationRepository vehicleObservationRepository;
+
+    @Autowired
+    private VerificationCheckpointRepository verificationCheckpointRepository;
+
     @BeforeEach
     void setUp() {
         RestAssured.baseURI = "http://localhost:" + port;
+        parkingRateCache.refresh();
+        licenseBalanceCache.clear();
     }
 
     @Test
@@ -70,6 +118,45 @@ class CoreApplicationTests {
         response.then().statusCode(200).body("invoices", hasSize(0));
     }
 
+    @Test
+    void givenOpenSession_whenStartSession_then409() {
+        var requestSpecification = given().pathParam("license", "ALREADY_PARKING").body("""
+                {
+                    "street": "Europaplein"
+                }
+                """).contentType(ContentType.JSON);
+
+        var response = requestSpecification.when().post("/sessions/{license}/start");
+
+        response.then().statusCode(409);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from parking_session where license = 'ALREADY_PARKING'", Long.class),
+                equalTo(1L));
+    }
+
+    @Test
+    void givenSessionsWrittenOutsideCore_whenStartAndStopSessions_thenOpenSessionsFollowed() {
+        // the admin application stops a session, deletes another one and starts a new one, without going through core
+        jdbcTemplate.update("update parking_session set end_instant = '2024-01-06 20:30:00+00' where license = 'ALREADY_PARKING'");
+        jdbcTemplate.update("delete from parking_session where license = 'PARKING_LONG'");
+        jdbcTemplate.update("insert into parking_session(license, street, start_instant) values ('ADMIN_PARKING', 'Free Street', '2024-01-06 20:00:00+00')");
+
+        given().pathParam("license", "ALREADY_PARKING").body("""
+                        {
+                            "street": "Europaplein"
+                        }
+                        """).contentType(ContentType.JSON)
+                .when().post("/sessions/{license}/start")
+                .then().statusCode(200);
+        given().pathParam("license", "PARKING_LONG")
+                .when().post("/sessions/{license}/stop")
+                .then().statusCode(404);
+        given().pathParam("license", "ADMIN_PARKING")
+                .when().post("/sessions/{license}/stop")
+                .then().statusCode(200);
+        assertThat(jdbcTemplate.queryForList("select license from parking_session_open order by license", String.class),
+                contains("ALREADY_PARKING", "PARKING_FREELY"));
+    }
+
     @Test
     void givenStartedSessionForFreeStreetInParkingPeriod_whenSessionStoppedOneHourLater_thenNoInvoiceCreated() {
         // Saturday 6 January 2024 20:00:00 UTC -> Saturday 6 January 2024 21:00:00 UTC (Free Street)
@@ -131,6 +218,20 @@ class CoreApplicationTests {
                 .then().statusCode(404);
     }
 
+    @Test
+    void givenChangedParkingRate_whenSessionStoppedAfterRefresh_thenInvoiceCreatedWithChangedRate() {
+        // Saturday 6 January 2024 20:00:00 UTC -> Saturday 6 January 2024 21:00:00 UTC (Europalein)
+        var parkingRate = parkingRateRepository.findByStreet("Europaplein").orElseThrow();
+        parkingRate.setRate(200);
+        parkingRateRepository.save(parkingRate);
+        parkingRateCache.refresh();
+
+        var response = given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop");
+
+        response.then().statusCode(200)
+                .body("amount", equalTo(12000));
+    }
+
     @Test
     void givenObservationsWithoutSessions_whenVerifyObservations_thenFineInvoicesCreated() {
         var requestSpecification = given().body("""
@@ -159,6 +260,56 @@ class CoreApplicationTests {
                 .body("invoices[0].observation.license", equalTo("DDD999"));
     }
 
+    @Test
+    void givenNdjsonObservations_whenStreamObservations_thenObservationsAdded() {
+        // RestAssured can only send NDJSON as bytes
+        var requestSpecification = given().body("""
+                        {"license": "DDD999", "street": "Europaplein", "observationInstant": "2021-01-01T12:00:00Z"}
+                        {"license": "EEE999", "street": "Europaplein", "observationInstant": "2021-01-01T12:05:00Z"}
+                        """.getBytes(StandardCharsets.UTF_8))
+                .contentType("application/x-ndjson");
+
+        var response = requestSpecification.when().post("/observations/stream");
+        observationsService.verifyObservations();
+
+        response.then().statusCode(200).body("count", equalTo(2));
+        given().param("license", "EEE999")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("invoices[0].observation.observationInstant", equalTo("2021-01-01T12:05:00Z"));
+    }
+
+    @Test
+    void givenCsvObservations_whenStreamObservations_thenObservationsAdded() {
+        var requestSpecification = given().body("""
+                        street,license,observationInstant
+                        Europaplein,DDD999,2021-01-01T12:00:00Z
+                        "Europaplein, North",EEE999,2021-01-01T12:05:00Z
+                        """)
+                .contentType("text/csv");
+
+        var response = requestSpecification.when().post("/observations/stream");
+
+        response.then().statusCode(200).body("count", equalTo(2));
+        assertThat(vehicleObservationRepository.findAll().stream().map(VehicleObservation::getStreet).toList(),
+                containsInAnyOrder("Europaplein", "Europaplein, North"));
+    }
+
+    @Test
+    void givenIncompleteObservation_whenStreamObservations_then400AndNoObservationsAdded() {
+        var requestSpecification = given().body("""
+                        {"license": "DDD999", "street": "Europaplein", "observationInstant": "2021-01-01T12:00:00Z"}
+                        {"license": "EEE999", "street": "Europaplein"}
+                        """.getBytes(StandardCharsets.UTF_8))
+                .contentType("application/x-ndjson");
+
+        var response = requestSpecification.when().post("/observations/stream");
+
+        response.then().statusCode(400).body("detail", containsString("line 2"));
+        assertThat(vehicleObservationRepository.count(), equalTo(0L));
+    }
+
     @Test
     void givenObservationsWithSessions_whenVerifyObservations_thenNoInvoicesCreated() {
         given().pathParam("license", "TEST_LICENSE").body("""
@@ -175,6 +326,114 @@ class CoreApplicationTests {
                 .body("invoices", hasSize(0));
     }
 
+    @Test
+    void givenSameObservations_whenVerifyObservationsPerRowAndSetBased_thenSameInvoicesCreated() {
+        var addObservationsRequest = """
+                {
+                	"observations": [
+                		{
+                			"license": "DDD999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		},
+                		{
+                			"license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2024-01-06T20:30:00Z"
+                		},
+                		{
+                			"license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2024-01-06T19:30:00Z"
+                		},
+                		{
+                			"license": "PARKING_LONG",
+                			"street": "Free Street",
+                			"observationInstant": "2024-01-06T20:30:00Z"
+                		}
+                	]
+                }
+                """;
+        given().body(addObservationsRequest).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations(VerificationMode.ROW);
+        var perRowInvoices = parkingInvoiceRepository.findAll();
+        var perRowInvoiceIds = perRowInvoices.stream().map(ParkingInvoice::getId).toList();
+
+        given().body(addObservationsRequest).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations(VerificationMode.SET);
+        var setBasedInvoices = parkingInvoiceRepository.findAll().stream()
+                .filter(invoice -> !perRowInvoiceIds.contains(invoice.getId()))
+                .toList();
+
+        assertThat(perRowInvoices, hasSize(2));
+        assertThat(setBasedInvoices.stream().map(CoreApplicationTests::describeFine).toList(),
+                containsInAnyOrder(perRowInvoices.stream().map(CoreApplicationTests::describeFine).toArray()));
+    }
+
+    @Test
+    void givenLongStoppedSession_whenVerifyObservationsPerRow_thenOnlyObservationBeforeSessionFined() {
+        // Saturday 30 December 2023 21:00:00 UTC -> Saturday 6 January 2024 21:00:00 UTC (Europalein)
+        given().pathParam("license", "PARKING_LONG").when().post("/sessions/{license}/stop").then().statusCode(200);
+        // a shorter session stopped by the admin application doesn't shorten the longest duration
+        jdbcTemplate.update("update parking_session set end_instant = '2024-01-06 20:30:00+00' where license = 'ALREADY_PARKING'");
+        assertThat(jdbcTemplate.queryForObject("select duration_seconds from parking_session_longest", Long.class),
+                equalTo(Duration.ofDays(7).toSeconds() + 1));
+        given().body("""
+                {
+                	"observations": [
+                		{
+                			"license": "PARKING_LONG",
+                			"street": "Europaplein",
+                			"observationInstant": "2023-12-31T12:00:00Z"
+                		},
+                		{
+                			"license": "PARKING_LONG",
+                			"street": "Europaplein",
+                			"observationInstant": "2023-12-30T20:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").then().statusCode(200);
+
+        observationsService.verifyObservations(VerificationMode.ROW);
+
+        var fines = parkingInvoiceRepository.findAll().stream().filter(invoice -> invoice.getObservation() != null).toList();
+        assertThat(fines, hasSize(1));
+        assertThat(fines.getFirst().getObservation().getObservationInstant(), equalTo(Instant.parse("2023-12-30T20:00:00Z")));
+    }
+
+    @Test
+    void givenCheckpointOfInterruptedRun_whenVerifyObservations_thenVerificationResumedAfterCheckpoint() {
+        given().body("""
+                {
+                	"observations": [
+                		{
+                			"license": "DDD999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		},
+                		{
+                			"license": "EEE999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        var checkpoint = new VerificationCheckpoint();
+        checkpoint.setName("observations-test-0");
+        checkpoint.setLastId(vehicleObservationRepository.findAll().getFirst().getId());
+        verificationCheckpointRepository.save(checkpoint);
+
+        observationsService.verifyObservations();
+
+        given().param("license", "DDD999").when().get("/invoices").then().statusCode(200).body("invoices", hasSize(0));
+        given().param("license", "EEE999").when().get("/invoices").then().statusCode(200).body("invoices", hasSize(1));
+        observationsService.verifyObservations();
+        given().param("license", "DDD999").when().get("/invoices").then().statusCode(200).body("invoices", hasSize(1));
+        given().param("license", "EEE999").when().get("/invoices").then().statusCode(200).body("invoices", hasSize(1));
+    }
+
     @Test
     void givenUnpaidInvoice_whenPayInvoices_thenInvoicePaid() {
         given().body("""
@@ -204,4 +463,320 @@ class CoreApplicationTests {
                 .body("invoices[0].paid", equalTo(true));
     }
 
+    @Test
+    void givenSessionInvoiceAndFines_whenGetInvoicesPages_thenAllInvoicesReturnedOnceNewestFirst() {
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        given().body("""
+                {
+                	"observations": [
+                		{
+                		    "license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		},
+                		{
+                		    "license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-02T12:00:00Z"
+                		},
+                		{
+                		    "license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-03T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations();
+
+        var firstPage = given().param("license", "ALREADY_PARKING").param("limit", 3)
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(3))
+                .body("nextCursor", notNullValue())
+                .extract().jsonPath();
+        var secondPage = given().param("license", "ALREADY_PARKING").param("limit", 3).param("cursor", firstPage.getString("nextCursor"))
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("nextCursor", nullValue())
+                .extract().jsonPath();
+
+        // all invoices were created at the same (fixed) time, so they are ordered by id
+        var invoiceIds = new ArrayList<Long>(firstPage.getList("invoices.invoiceId", Long.class));
+        invoiceIds.addAll(secondPage.getList("invoices.invoiceId", Long.class));
+        assertThat(invoiceIds, contains(invoiceIds.stream().sorted(Comparator.reverseOrder()).toArray()));
+        assertThat(secondPage.getString("invoices[0].session.license"), equalTo("ALREADY_PARKING"));
+    }
+
+    @Test
+    void givenSessionInvoiceAndFine_whenGetInvoicesPageWithFilters_thenOnlyMatchingInvoicesReturned() {
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        given().body("""
+                {
+                	"observations": [
+                		{
+                		    "license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations();
+
+        given().param("license", "ALREADY_PARKING").param("source", "session")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("invoices[0].session.license", equalTo("ALREADY_PARKING"));
+        given().param("license", "ALREADY_PARKING").param("source", "observation").param("paid", false)
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("invoices[0].observation.license", equalTo("ALREADY_PARKING"));
+        given().param("license", "ALREADY_PARKING").param("paid", true)
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(0));
+        given().param("license", "ALREADY_PARKING").param("from", "2024-01-06T21:00:01Z")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(0));
+        given().param("license", "ALREADY_PARKING").param("to", "2024-01-06T21:00:01Z")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(2));
+    }
+
+    @Test
+    void givenInvalidCursorOrLimit_whenGetInvoicesPage_then400() {
+        given().param("license", "ALREADY_PARKING").param("cursor", "not a cursor")
+                .when().get("/v2/invoices")
+                .then().statusCode(400);
+        given().param("license", "ALREADY_PARKING").param("limit", 501)
+                .when().get("/v2/invoices")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void givenPaidAndUnpaidInvoices_whenPayInvoices_thenStatusPerInvoiceReturned() {
+        given().body("""
+                {
+                	"observations": [
+                		{
+                		    "license": "DDD999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		},
+                		{
+                		    "license": "DDD999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-02T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations();
+        var invoiceIds = given().param("license", "DDD999")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .extract().jsonPath().getList("invoices.invoiceId", Long.class);
+        given().pathParam("invoiceId", invoiceIds.get(0)).when().post("/invoices/{invoiceId}/pay").then().statusCode(200);
+        var requestSpecification = given().body("""
+                {
+                	"invoiceIds": [%d, %d, 999999, %d]
+                }
+                """.formatted(invoiceIds.get(0), invoiceIds.get(1), invoiceIds.get(1))).contentType(ContentType.JSON);
+
+        var response = requestSpecification.when().post("/invoices/pay");
+
+        response.then().statusCode(200)
+                .body("results.invoiceId", contains(invoiceIds.get(0).intValue(), invoiceIds.get(1).intValue(), 999999))
+                .body("results.status", contains("already_paid", "paid", "not_found"))
+                .body("paid", equalTo(1))
+                .body("alreadyPaid", equalTo(1))
+                .body("notFound", equalTo(1));
+        given().param("license", "DDD999")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices.paid", everyItem(equalTo(true)));
+    }
+
+    @Test
+    void givenStreamOfInvoiceIds_whenStreamPayInvoices_thenInvoicesPaid() {
+        given().body("""
+                {
+                	"observations": [
+                		{
+                		    "license": "DDD999",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations();
+        var invoiceId = given().param("license", "DDD999")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .extract().jsonPath().getLong("invoices[0].invoiceId");
+
+        given().body("%d\nnot an id\n".formatted(invoiceId).getBytes(StandardCharsets.UTF_8)).contentType(ContentType.TEXT)
+                .when().post("/invoices/pay/stream")
+                .then().statusCode(400);
+        given().param("license", "DDD999").when().get("/invoices").then().body("invoices[0].paid", equalTo(false));
+        var response = given().body("%d\n\n999999\n".formatted(invoiceId).getBytes(StandardCharsets.UTF_8)).contentType(ContentType.TEXT)
+                .when().post("/invoices/pay/stream");
+
+        response.then().statusCode(200)
+                .body("results.status", contains("paid", "not_found"));
+        given().param("license", "DDD999").when().get("/invoices").then().body("invoices[0].paid", equalTo(true));
+    }
+
+    @Test
+    void givenNoInvoicesForLicense_whenGetInvoicesBalance_thenZeroBalance() {
+        var requestSpecification = given().param("license", "TEST_LICENSE");
+
+        var response = requestSpecification.when().get("/invoices/balance");
+
+        response.then().statusCode(200)
+                .body("license", equalTo("TEST_LICENSE"))
+                .body("openBalance", equalTo(0))
+                .body("unpaidCount", equalTo(0))
+                .body("latestInvoiceInstant", nullValue());
+    }
+
+    @Test
+    void givenSessionInvoiceAndFine_whenInvoicesCreatedAndPaid_thenBalanceUpdated() {
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance").then().body("openBalance", equalTo(0));
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        given().body("""
+                {
+                	"observations": [
+                		{
+                		    "license": "ALREADY_PARKING",
+                			"street": "Europaplein",
+                			"observationInstant": "2021-01-01T12:00:00Z"
+                		}
+                	]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").thenReturn();
+        observationsService.verifyObservations();
+
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance")
+                .then().statusCode(200)
+                .body("openBalance", equalTo(16000))
+                .body("unpaidCount", equalTo(2))
+                .body("latestInvoiceInstant", equalTo("2024-01-06T21:00:00Z"));
+        var fineId = given().param("license", "ALREADY_PARKING").param("source", "observation")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .extract().jsonPath().getLong("invoices[0].invoiceId");
+        given().pathParam("invoiceId", fineId).when().post("/invoices/{invoiceId}/pay").then().statusCode(200);
+        given().pathParam("invoiceId", fineId).when().post("/invoices/{invoiceId}/pay").then().statusCode(200);
+
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance")
+                .then().statusCode(200)
+                .body("openBalance", equalTo(6000))
+                .body("unpaidCount", equalTo(1));
+    }
+
+    @Test
+    void givenBalanceChangedOnOtherNode_whenGetInvoicesBalance_thenCachedUntilTtlExpired() {
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance").then().body("openBalance", equalTo(6000));
+
+        // an invoice paid on another node doesn't evict the balance on this node
+        jdbcTemplate.update("update license_balance set open_balance = 0, unpaid_count = 0 where license = 'ALREADY_PARKING'");
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance").then().body("openBalance", equalTo(6000));
+
+        licenseBalanceProperties.setCacheTtl(0);
+        try {
+            given().param("license", "ALREADY_PARKING").when().get("/invoices/balance").then().body("openBalance", equalTo(0));
+        } finally {
+            licenseBalanceProperties.setCacheTtl(5);
+        }
+    }
+
+    @Test
+    void givenUnpaidInvoice_whenPaidConcurrently_thenSubtractedFromBalanceOnce() {
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        var invoiceId = given().param("license", "ALREADY_PARKING").when().get("/invoices").jsonPath().getLong("invoices[0].invoiceId");
+
+        // both pay endpoints at the same time
+        IntStream.range(0, 8).parallel().forEach(i -> {
+            if (i % 2 == 0) {
+                given().pathParam("invoiceId", invoiceId).when().post("/invoices/{invoiceId}/pay").then().statusCode(200);
+            } else {
+                given().body("{\"invoiceIds\": [%d]}".formatted(invoiceId)).contentType(ContentType.JSON)
+                        .when().post("/invoices/pay").then().statusCode(200);
+            }
+        });
+
+        given().param("license", "ALREADY_PARKING").when().get("/invoices/balance")
+                .then().statusCode(200)
+                .body("openBalance", equalTo(0))
+                .body("unpaidCount", equalTo(0));
+    }
+
+    @Test
+    void givenETagOfInvoices_whenGetInvoicesWithIfNoneMatch_then304UntilInvoicesChanged() {
+        var etag = given().param("license", "ALREADY_PARKING")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given().param("license", "ALREADY_PARKING").header("If-None-Match", etag)
+                .when().get("/invoices")
+                .then().statusCode(304)
+                .header("ETag", equalTo(etag))
+                .body(emptyString());
+        given().param("license", "ALREADY_PARKING").header("If-None-Match", etag)
+                .when().get("/v2/invoices")
+                .then().statusCode(304);
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        var changedEtag = given().param("license", "ALREADY_PARKING").header("If-None-Match", etag)
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .extract().header("ETag");
+        var invoiceId = given().param("license", "ALREADY_PARKING").when().get("/invoices").jsonPath().getLong("invoices[0].invoiceId");
+        given().pathParam("invoiceId", invoiceId).when().post("/invoices/{invoiceId}/pay").then().statusCode(200);
+
+        given().param("license", "ALREADY_PARKING").header("If-None-Match", changedEtag)
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true))
+                .header("ETag", not(equalTo(changedEtag)));
+    }
+
+    @Test
+    void givenETagOfInvoices_whenInvoicePaidOutsideCore_thenInvoicesReturnedAgain() {
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        var etag = given().param("license", "ALREADY_PARKING")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        // like the admin application, which writes the invoice without the application
+        jdbcTemplate.update("update parking_invoice set paid = true where license = 'ALREADY_PARKING'");
+
+        given().param("license", "ALREADY_PARKING").header("If-None-Match", etag)
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true))
+                .header("ETag", not(equalTo(etag)));
+        given().param("license", "ALREADY_PARKING").header("If-None-Match", etag)
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true));
+    }
+
+    private static List<Object> describeFine(ParkingInvoice invoice) {
+        return List.of(invoice.getObservation().getLicense(), invoice.getObservation().getStreet(),
+                invoice.getObservation().getObservationInstant(), invoice.getInvoiceInstant(), invoice.getAmount(), invoice.getPaid());
+    }
+
 }
@@ -0,0 +1,100 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.repository.VehicleObservationRepository;
+import abn.parking.core.service.ParkingRateCache;
+import abn.parking.core.service.SessionIndex;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+// Observations are verified as soon as they are added. The clock is fixed at 2024-01-06T21:00:00Z, so observations
+// from before 2024-01-06T20:00:00Z (the session retention of 60 minutes) are left for the scheduled task.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "observations.ingestion.inline-verification=true",
+        "observations.ingestion.session-retention=60"})
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class InlineVerificationTests {
+
+    @LocalServerPort
+    private Integer port;
+
+    // the rates and sessions are inserted before every test, so they need to be picked up before the test starts
+    @Autowired
+    private ParkingRateCache parkingRateCache;
+
+    @Autowired
+    private SessionIndex sessionIndex;
+
+    @Autowired
+    private VehicleObservationRepository vehicleObservationRepository;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+        parkingRateCache.refresh();
+        sessionIndex.rebuild();
+    }
+
+    @Test
+    void givenObservationWithOpenSession_whenAddObservations_thenVerifiedWithoutInvoice() {
+        var response = addObservation("ALREADY_PARKING", "2024-01-06T20:30:00Z");
+
+        response.then().statusCode(200);
+        assertThat(vehicleObservationRepository.findAll().getFirst().getVerified(), is(true));
+        given().param("license", "ALREADY_PARKING")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(0));
+    }
+
+    @Test
+    void givenObservationWithoutSession_whenAddObservations_thenFinedRightAway() {
+        var response = addObservation("DDD999", "2024-01-06T20:30:00Z");
+
+        response.then().statusCode(200);
+        assertThat(vehicleObservationRepository.findAll().getFirst().getVerified(), is(true));
+        given().param("license", "DDD999")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("invoices[0].amount", equalTo(10000));
+    }
+
+    @Test
+    void givenObservationOlderThanSessionRetention_whenAddObservations_thenLeftForScheduledTask() {
+        var response = addObservation("DDD999", "2024-01-06T19:59:59Z");
+
+        response.then().statusCode(200);
+        assertThat(vehicleObservationRepository.findAll().getFirst().getVerified(), is(false));
+    }
+
+    private static Response addObservation(String license, String observationInstant) {
+        return given().body("""
+                        {
+                        	"observations": [
+                        		{
+                        			"license": "%s",
+                        			"street": "Europaplein",
+                        			"observationInstant": "%s"
+                        		}
+                        	]
+                        }
+                        """.formatted(license, observationInstant))
+                .contentType(ContentType.JSON)
+                .when().post("/observations");
+    }
+}
@@ -0,0 +1,122 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.service.LicenseBalanceCache;
+import abn.parking.core.service.ObservationsService;
+import abn.parking.core.service.ParkingRateCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+// Meters are shared by all tests which use the same application context, so only the changes of the meters are checked.
+// The Prometheus registry is disabled in tests unless the observability is auto-configured.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestClockConfiguration.class)
+@AutoConfigureObservability(tracing = false)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class MetricsTests {
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private ObservationsService observationsService;
+
+    @Autowired
+    private ParkingRateCache parkingRateCache;
+
+    @Autowired
+    private LicenseBalanceCache licenseBalanceCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+        parkingRateCache.refresh();
+        licenseBalanceCache.clear();
+    }
+
+    @Test
+    void givenStoppedSession_whenMetrics_thenInvoiceAndAmountCalculationRecorded() {
+        var invoices = count("invoices.issued", "type", "session");
+        var calculations = timerCount("sessions.amount.calculation", "street", "Europaplein");
+        var freeCalculations = timerCount("sessions.amount.calculation", "street", "other");
+
+        given().pathParam("license", "ALREADY_PARKING").when().post("/sessions/{license}/stop").then().statusCode(200);
+        given().pathParam("license", "PARKING_FREELY").when().post("/sessions/{license}/stop").then().statusCode(200);
+
+        assertThat(count("invoices.issued", "type", "session"), is(invoices + 1));
+        assertThat(timerCount("sessions.amount.calculation", "street", "Europaplein"), is(calculations + 1));
+        // Free Street has no parking rate, so it is not a tag of its own
+        assertThat(timerCount("sessions.amount.calculation", "street", "other"), is(freeCalculations + 1));
+    }
+
+    @Test
+    void givenObservations_whenVerifyObservations_thenIngestionVerificationAndBacklogRecorded() {
+        var ingested = meterRegistry.summary("observations.ingested", "mode", "sync").totalAmount();
+        var verifications = timerCount("observations.verification", "mode", "set");
+        var fines = count("invoices.issued", "type", "fine");
+
+        given().body("""
+                {
+                    "observations": [
+                        {"license": "FINED", "street": "Europaplein", "observationInstant": "2024-01-06T12:00:00Z"},
+                        {"license": "ALREADY_PARKING", "street": "Europaplein", "observationInstant": "2024-01-06T20:30:00Z"},
+                        {"license": "NOT_FINED", "street": "Unknown Street", "observationInstant": "2024-01-06T12:00:00Z"}
+                    ]
+                }
+                """).contentType(ContentType.JSON).when().post("/observations").then().statusCode(200);
+        observationsService.verifyObservations();
+
+        assertThat(meterRegistry.summary("observations.ingested", "mode", "sync").totalAmount(), is(ingested + 3));
+        assertThat(timerCount("observations.verification", "mode", "set"), is(verifications + 1));
+        assertThat(count("invoices.issued", "type", "fine"), is(fines + 1));
+        assertThat(meterRegistry.get("observations.unverified").gauge().value(), is(0.0));
+        assertThat(meterRegistry.get("observations.unverified.age").gauge().value(), is(0.0));
+    }
+
+    @Test
+    void givenParkingRates_whenFindByStreet_thenLookupsCountedPerStreet() {
+        var hits = count("parking.rates.lookups", "result", "hit", "street", "Europaplein");
+        var misses = count("parking.rates.lookups", "result", "miss", "street", "other");
+
+        parkingRateCache.findByStreet("Europaplein");
+        parkingRateCache.findByStreet("Europaplein");
+        parkingRateCache.findByStreet("Unknown Street");
+
+        assertThat(count("parking.rates.lookups", "result", "hit", "street", "Europaplein"), is(hits + 2));
+        assertThat(count("parking.rates.lookups", "result", "miss", "street", "other"), is(misses + 1));
+    }
+
+    @Test
+    void givenMetrics_whenGetPrometheus_thenMetricsExported() {
+        given().when().get("/actuator/prometheus")
+                .then().statusCode(200)
+                .body(containsString("invoices_issued_total{"))
+                .body(containsString("observations_unverified "))
+                .body(containsString("parking_rates_lookups_total{"));
+    }
+
+    private double count(String name, String... tags) {
+        return meterRegistry.counter(name, tags).count();
+    }
+
+    private long timerCount(String name, String... tags) {
+        return meterRegistry.timer(name, tags).count();
+    }
+}
@@ -0,0 +1,68 @@
+package abn.parking.core;
+
+import abn.parking.core.service.ObservationsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs two nodes (application contexts) against the same database, to make sure that nodes never verify the same
+// observations when they are verifying observations at the same time.
+class MultiNodeVerificationTests {
+
+    private static final int OBSERVATIONS = 1_000;
+
+    private ConfigurableApplicationContext firstNode;
+    private ConfigurableApplicationContext secondNode;
+
+    @BeforeEach
+    void setUp() {
+        firstNode = startNode("first");
+        secondNode = startNode("second");
+    }
+
+    @AfterEach
+    void tearDown() {
+        secondNode.close();
+        firstNode.close();
+    }
+
+    @Test
+    void givenUnverifiedObservations_whenVerifyObservationsOnTwoNodes_thenEveryObservationFinedOnce() {
+        var jdbcTemplate = firstNode.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into parking_rate(fine_rate, rate, street) values (10000, 100, 'Europaplein')");
+        jdbcTemplate.batchUpdate("insert into vehicle_observation(verified, observation_instant, license, street) values (false, ?, ?, 'Europaplein')",
+                IntStream.range(0, OBSERVATIONS)
+                        .mapToObj(i -> new Object[]{Timestamp.from(Instant.parse("2021-01-01T12:00:00Z")), "LICENSE_" + i})
+                        .toList());
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> firstNode.getBean(ObservationsService.class).verifyObservations()),
+                CompletableFuture.runAsync(() -> secondNode.getBean(ObservationsService.class).verifyObservations())
+        ).join();
+
+        assertEquals(OBSERVATIONS, jdbcTemplate.queryForObject("select count(*) from parking_invoice", Integer.class));
+        assertEquals(OBSERVATIONS, jdbcTemplate.queryForObject("select count(distinct observation_id) from parking_invoice", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from vehicle_observation where verified = false", Integer.class));
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId) {
+        return new SpringApplicationBuilder(CoreApplication.class)
+                .web(WebApplicationType.NONE)
+                // passed as command line arguments, so that they take precedence over application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:multinode",
+                        "--observations.process.node-id=" + nodeId,
+                        "--observations.process.workers=2",
+                        "--observations.process.chunk-size=50");
+    }
+}
@@ -0,0 +1,87 @@
+package abn.parking.core;
+
+import abn.parking.core.replay.EventReplay;
+import abn.parking.core.service.LicenseBalanceCache;
+import abn.parking.core.service.ParkingRateCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The clock is the time of the replayed events, instead of the fixed clock of the other tests.
+@SpringBootTest(properties = "replay.enabled=true")
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ReplayTests {
+
+    @Autowired
+    private EventReplay eventReplay;
+
+    @Autowired
+    private ParkingRateCache parkingRateCache;
+
+    @Autowired
+    private LicenseBalanceCache licenseBalanceCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setUp() {
+        parkingRateCache.refresh();
+        licenseBalanceCache.clear();
+    }
+
+    @Test
+    void givenEvents_whenReplay_thenSessionsInvoicedAndObservationsVerifiedAtReplayedTime() throws IOException {
+        var file = directory.resolve("events.jsonl");
+        Files.writeString(file, """
+                {"type": "start", "instant": "2024-01-08T08:00:00Z", "license": "REPLAYED", "street": "Europaplein"}
+                {"type": "observations", "instant": "2024-01-08T08:10:00Z", "observations": [{"license": "REPLAYED", "street": "Europaplein", "observationInstant": "2024-01-08T08:09:00Z"}, {"license": "FINED", "street": "Europaplein", "observationInstant": "2024-01-08T08:09:00Z"}, {"license": "NOT_FINED", "street": "Unknown Street", "observationInstant": "2024-01-08T08:09:00Z"}]}
+                {"type": "stop", "instant": "2024-01-08T08:20:00Z", "license": "REPLAYED"}
+                {"type": "stop", "instant": "2024-01-08T08:30:00Z", "license": "NOT_STARTED"}
+                """);
+
+        var report = eventReplay.replay(file);
+
+        assertThat(report.events(), is(4L));
+        assertThat(report.skippedStops(), is(1L));
+        assertThat(report.observations(), is(3L));
+        // at 08:01, 08:11 and 08:21 (before the events after them), and after the last event
+        assertThat(report.verifications(), is(4L));
+        assertThat(report.sessionInvoices(), is(1L));
+        assertThat(report.fines(), is(1L));
+
+        // 20 minutes at a rate of 100
+        assertThat(jdbcTemplate.queryForObject("select amount from parking_invoice where license = 'REPLAYED'", Long.class), is(2000L));
+        // fined by the verification of 08:11
+        assertThat(jdbcTemplate.queryForObject("select invoice_instant from parking_invoice where license = 'FINED'", OffsetDateTime.class).toInstant().toString(),
+                is("2024-01-08T08:11:00Z"));
+    }
+
+    @Test
+    void givenEventsOutOfOrder_whenReplay_thenFails() throws IOException {
+        var file = directory.resolve("events.jsonl");
+        Files.writeString(file, """
+                {"type": "start", "instant": "2024-01-08T08:00:00Z", "license": "REPLAYED", "street": "Europaplein"}
+                {"type": "stop", "instant": "2024-01-08T07:00:00Z", "license": "REPLAYED"}
+                """);
+
+        assertThrows(IllegalArgumentException.class, () -> eventReplay.replay(file));
+    }
+}
@@ -0,0 +1,124 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.service.LicenseBalanceCache;
+import io.restassured.RestAssured;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.jdbc.Sql;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+// Runs against two H2 databases, a primary and a replica, of which the replica is not kept up to date by replication,
+// so that it shows from which database the invoices were read.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "replica.enabled=true",
+        "replica.url=" + ReplicaRoutingTests.REPLICA_URL,
+        "replica.username=sa",
+        "replica.password=password"})
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ReplicaRoutingTests {
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final JdbcTemplate REPLICA = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LicenseBalanceCache licenseBalanceCache;
+
+    @BeforeAll
+    static void createReplica() {
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "sa", "password")
+                .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+                .load()
+                .migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+        licenseBalanceCache.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        REPLICA.update("delete from parking_invoice");
+        REPLICA.update("delete from license_balance");
+    }
+
+    @Test
+    void givenInvoiceOnReplicaOnly_whenGetInvoices_thenInvoiceReadFromReplica() {
+        REPLICA.update("insert into parking_invoice(id, paid, amount, invoice_instant, license) values (1, false, 10000, '2024-01-06 12:00:00+00', 'REPLICATED')");
+
+        given().param("license", "REPLICATED")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1));
+        given().param("license", "REPLICATED")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1));
+    }
+
+    @Test
+    void givenInvoicePaidOnPrimary_whenGetInvoices_thenInvoiceReadFromPrimary() {
+        var insert = "insert into parking_invoice(id, paid, amount, invoice_instant, license) values (2, false, 10000, '2024-01-06 12:00:00+00', 'PAYING')";
+        jdbcTemplate.update(insert);
+        REPLICA.update(insert);
+
+        given().when().post("/invoices/2/pay").then().statusCode(200);
+
+        // the replica still has the unpaid invoice, but the invoices of the license are read from the primary
+        given().param("license", "PAYING")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true));
+        given().param("license", "PAYING")
+                .when().get("/v2/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true));
+    }
+
+    @Test
+    void givenInvoicePaidByOtherNode_whenGetInvoices_thenInvoiceReadFromPrimary() {
+        var insert = "insert into parking_invoice(id, paid, amount, invoice_instant, license) values (3, false, 10000, '2024-01-06 12:00:00+00', 'OTHER_NODE')";
+        jdbcTemplate.update(insert);
+        REPLICA.update(insert);
+
+        // paid on another node, which this node knows nothing about
+        jdbcTemplate.update("update parking_invoice set paid = true where id = 3");
+
+        // the replica has an older version of the balance, so the invoices of the license are read from the primary
+        given().param("license", "OTHER_NODE")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(true));
+
+        // once the replica has caught up, the invoices are read from the replica again
+        REPLICA.update("update license_balance set version = 2 where license = 'OTHER_NODE'");
+        given().param("license", "OTHER_NODE")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices[0].paid", equalTo(false));
+    }
+}
@@ -0,0 +1,105 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.retention.RetentionJob;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+// The clock is fixed at 2024-01-06T21:00:00Z, so observations from before 2024-01-05T21:00:00Z and sessions stopped
+// before 2023-12-07T21:00:00Z are old enough to be archived. Batches of one row make every row a batch of its own.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "retention.batch-size=1",
+        "retention.pause=0",
+        "retention.observation-retention-days=1",
+        "retention.session-retention-days=30"})
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class RetentionTests {
+
+    @LocalServerPort
+    private Integer port;
+
+    // the only reason we autowire this is to call the archive methods, which are usually scheduled.
+    @Autowired
+    private RetentionJob retentionJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+    }
+
+    @Test
+    void givenObservations_whenArchiveObservations_thenOnlyOldVerifiedObservationsWithoutFineArchived() {
+        insertObservation(1, true, "2024-01-01T12:00:00Z", "ARCHIVED");
+        insertObservation(2, true, "2024-01-01T12:00:00Z", "FINED");
+        insertObservation(3, false, "2024-01-01T12:00:00Z", "UNVERIFIED");
+        insertObservation(4, true, "2024-01-06T12:00:00Z", "RECENT");
+        insertObservation(5, true, "2024-01-02T12:00:00Z", "ARCHIVED");
+        jdbcTemplate.update("""
+                insert into parking_invoice(paid, amount, invoice_instant, observation_id, license)
+                values (false, 10000, '2024-01-02 12:00:00+00', 2, 'FINED')""");
+
+        var archived = retentionJob.archiveObservations();
+
+        assertThat(archived, is(2L));
+        assertThat(jdbcTemplate.queryForList("select license from vehicle_observation order by id", String.class),
+                contains("FINED", "UNVERIFIED", "RECENT"));
+        assertThat(jdbcTemplate.queryForList("select id from vehicle_observation_archive order by id", Long.class),
+                contains(1L, 5L));
+    }
+
+    @Test
+    void givenSessions_whenArchiveSessions_thenOnlyOldSessionsWithoutInvoiceArchived() {
+        var freeSessionId = insertSession("FREE", "2023-11-01T12:00:00Z");
+        var paidSessionId = insertSession("PAID", "2023-11-01T12:00:00Z");
+        var unpaidSessionId = insertSession("UNPAID", "2023-11-01T12:00:00Z");
+        insertSession("RECENT", "2024-01-01T12:00:00Z");
+        insertSessionInvoice(paidSessionId, "PAID", true);
+        insertSessionInvoice(unpaidSessionId, "UNPAID", false);
+
+        var archived = retentionJob.archiveSessions();
+
+        assertThat(archived, is(1L));
+        assertThat(jdbcTemplate.queryForList("select id from parking_session_archive order by id", Long.class),
+                contains(freeSessionId));
+        assertThat(jdbcTemplate.queryForList("select license from parking_session where end_instant is not null order by id", String.class),
+                contains("PAID", "UNPAID", "RECENT"));
+        given().param("license", "PAID")
+                .when().get("/invoices")
+                .then().statusCode(200)
+                .body("invoices", hasSize(1))
+                .body("invoices[0].paid", equalTo(true))
+                .body("invoices[0].session.street", equalTo("Europaplein"));
+    }
+
+    private void insertObservation(long id, boolean verified, String observationInstant, String license) {
+        jdbcTemplate.update("insert into vehicle_observation(id, verified, observation_instant, license, street) values (?, ?, cast(? as timestamp with time zone), ?, 'Europaplein')",
+                id, verified, observationInstant, license);
+    }
+
+    private Long insertSession(String license, String endInstant) {
+        jdbcTemplate.update("insert into parking_session(license, street, start_instant, end_instant) values (?, 'Europaplein', dateadd(hour, -1, cast(? as timestamp with time zone)), cast(? as timestamp with time zone))",
+                license, endInstant, endInstant);
+        return jdbcTemplate.queryForObject("select max(id) from parking_session", Long.class);
+    }
+
+    private void insertSessionInvoice(Long sessionId, String license, boolean paid) {
+        jdbcTemplate.update("insert into parking_invoice(paid, amount, invoice_instant, session_id, license) values (?, 6000, '2023-11-01 12:00:00+00', ?, ?)",
+                paid, sessionId, license);
+    }
+}
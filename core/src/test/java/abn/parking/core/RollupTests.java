@@ -0,0 +1,135 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.RollupProperties;
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.rollup.StreetDailyRollupJob;
+import abn.parking.core.service.InvoicesService;
+import abn.parking.core.service.ObservationsService;
+import abn.parking.core.service.SessionsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The clock is fixed at 2024-01-06T21:00:00Z, so with a lag of 300 seconds everything before 2024-01-06T20:55:00Z is
+// rolled up, and with a lag of a day everything before 2024-01-05T21:00:00Z.
+@SpringBootTest
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class RollupTests {
+
+    // the only reason we autowire this is to call the rollup, which is usually scheduled.
+    @Autowired
+    private StreetDailyRollupJob streetDailyRollupJob;
+
+    @Autowired
+    private RollupProperties rollupProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionAttributeSource transactionAttributeSource;
+
+    @AfterEach
+    void tearDown() {
+        rollupProperties.setLag(300);
+    }
+
+    @Test
+    void givenInvoicesPaymentsAndSessions_whenRollUpTwice_thenOnlyNewRowsAddedToStreetDays() {
+        // a session stopped on 5 January, of which the invoice was paid on 6 January
+        var sessionId = insertSession("PAID", "Europaplein", "2024-01-05T10:00:00Z", "2024-01-05T11:00:00Z");
+        jdbcTemplate.update("""
+                insert into parking_invoice(paid, paid_instant, amount, invoice_instant, session_id, license)
+                values (true, '2024-01-06 12:00:00+00', 6000, '2024-01-05 11:00:00+00', ?, 'PAID')""", sessionId);
+        // a fine of 6 January
+        jdbcTemplate.update("insert into vehicle_observation(id, verified, observation_instant, license, street) values (1, true, '2024-01-05 23:30:00+00', 'FINED', 'Europaplein')");
+        jdbcTemplate.update("""
+                insert into parking_invoice(paid, amount, invoice_instant, observation_id, license)
+                values (false, 10000, '2024-01-06 01:00:00+00', 1, 'FINED')""");
+        // a session which was stopped within the lag
+        insertSession("RECENT", "Free Street", "2024-01-06T20:00:00Z", "2024-01-06T20:58:00Z");
+
+        rollupProperties.setLag(86400);
+        assertThat(streetDailyRollupJob.rollUp(), is(2L));
+        assertThat(findRollups(), contains(
+                "Europaplein,2024-01-05,1,6000,0,0,0,0,1,60"));
+
+        rollupProperties.setLag(300);
+        assertThat(streetDailyRollupJob.rollUp(), is(2L));
+        assertThat(findRollups(), contains(
+                "Europaplein,2024-01-05,1,6000,0,0,1,6000,1,60",
+                "Europaplein,2024-01-06,1,10000,1,10000,0,0,0,0"));
+
+        // nothing is added again
+        assertThat(streetDailyRollupJob.rollUp(), is(0L));
+    }
+
+    @Test
+    void givenInvoiceOfDetachedObservation_whenRollUp_thenAddedToUnknownStreet() {
+        // the observation of the fine can't be found anymore, as if its partition was detached
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try {
+            jdbcTemplate.update("""
+                    insert into parking_invoice(paid, amount, invoice_instant, observation_id, license)
+                    values (false, 10000, '2024-01-06 01:00:00+00', 1, 'FINED')""");
+        } finally {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+
+        assertThat(streetDailyRollupJob.rollUp(), is(1L));
+        assertThat(findRollups(), contains(
+                "(unknown),2024-01-06,1,10000,1,10000,0,0,0,0"));
+    }
+
+    @Test
+    void givenLagNotLongerThanWriteTimeout_whenRollUp_thenRefused() {
+        rollupProperties.setLag(60);
+
+        assertThrows(IllegalStateException.class, () -> streetDailyRollupJob.rollUp());
+        assertThat(findRollups(), empty());
+    }
+
+    @Test
+    void givenWritesWhichAreRolledUp_whenGetTransactionAttributes_thenWriteTimeoutApplied() throws NoSuchMethodException {
+        var writes = List.of(
+                SessionsService.class.getMethod("stopParkingSession", String.class),
+                InvoicesService.class.getMethod("payInvoice", Long.class),
+                InvoicesService.class.getMethod("payInvoices", List.class),
+                ObservationsService.class.getMethod("addObservations", AddObservationsRequest.class));
+
+        writes.forEach(write -> assertThat(write.getName(),
+                transactionAttributeSource.getTransactionAttribute(write, write.getDeclaringClass()).getTimeout(),
+                is(rollupProperties.getWriteTimeout())));
+    }
+
+    private Long insertSession(String license, String street, String startInstant, String endInstant) {
+        jdbcTemplate.update("insert into parking_session(license, street, start_instant, end_instant) values (?, ?, cast(? as timestamp with time zone), cast(? as timestamp with time zone))",
+                license, street, startInstant, endInstant);
+        return jdbcTemplate.queryForObject("select max(id) from parking_session", Long.class);
+    }
+
+    private List<String> findRollups() {
+        return jdbcTemplate.query("""
+                select * from street_daily_rollup order by street, rollup_day""", (rs, rowNum) -> String.join(",",
+                rs.getString("street"), rs.getString("rollup_day"), rs.getString("invoice_count"),
+                rs.getString("invoice_amount"), rs.getString("fine_count"), rs.getString("fine_amount"),
+                rs.getString("paid_count"), rs.getString("paid_amount"), rs.getString("session_count"),
+                rs.getString("session_minutes")));
+    }
+}
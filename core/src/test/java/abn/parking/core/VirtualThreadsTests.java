@@ -0,0 +1,79 @@
+package abn.parking.core;
+
+import abn.parking.core.configuration.TestClockConfiguration;
+import abn.parking.core.datasource.BulkheadDataSource;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+// Runs the application in virtual thread mode with a pool of only two connections, so that most requests have to wait
+// in the bulkhead for a connection.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:virtual",
+        "spring.datasource.hikari.maximum-pool-size=2"})
+@Import(TestClockConfiguration.class)
+@Sql(scripts = {"/sql/init.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class VirtualThreadsTests {
+
+    private static final int REQUESTS = 50;
+
+    @LocalServerPort
+    private Integer port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+    }
+
+    @Test
+    void givenVirtualThreads_whenDataSource_thenConnectionsLimitedByBulkhead() throws SQLException {
+        assertThat(dataSource.isWrapperFor(BulkheadDataSource.class), is(true));
+    }
+
+    @Test
+    void givenConcurrentSessions_whenStartAndStopSessions_thenAllRequestsSucceed() {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var statusCodes = IntStream.range(0, REQUESTS)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> startAndStopSession("LICENSE_" + i), executor))
+                    .toList().stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+
+            assertThat(statusCodes, everyItem(is(200)));
+        }
+    }
+
+    private int startAndStopSession(String license) {
+        var started = given().pathParam("license", license).body("""
+                {
+                    "street": "Europaplein"
+                }
+                """).contentType(ContentType.JSON).when().post("/sessions/{license}/start").statusCode();
+        if (started != 200) {
+            return started;
+        }
+        return given().pathParam("license", license).when().post("/sessions/{license}/stop").statusCode();
+    }
+}
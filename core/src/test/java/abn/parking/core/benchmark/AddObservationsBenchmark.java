@@ -0,0 +1,89 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.CoreApplication;
+import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.dto.AddObservationsRequestObservation;
+import abn.parking.core.service.ObservationsService;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how many observations per second are added by {@link ObservationsService#addObservations}, for an upload of
+ * 5000 observations (a full round of a camera car).
+ * <p>
+ * A batch size of 0 disables JDBC batching, so every observation is inserted with its own statement (like before ids
+ * were allocated from a sequence). The observations are added to an in-memory H2 database which is accessed over TCP, so
+ * that every statement (or batch of statements) costs a network round trip, like it does in production. On Postgres,
+ * {@code reWriteBatchedInserts=true} additionally rewrites every batch into multi-row inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AddObservationsBenchmark {
+
+    private static final int OBSERVATIONS = 5_000;
+
+    @Param({"0", "500"})
+    private String batchSize;
+
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private ObservationsService observationsService;
+    private JdbcTemplate jdbcTemplate;
+    private AddObservationsRequest request;
+
+    @Setup
+    public void setUp() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        context = new SpringApplicationBuilder(CoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:tcp://localhost:%d/mem:benchmark"
+                                .formatted(server.getPort()),
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        // keep the verification task from running during the measurements
+                        "--observations.process.interval=1440",
+                        "--logging.level.root=warn");
+        observationsService = context.getBean(ObservationsService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        var observationInstant = Instant.parse("2024-01-06T20:00:00Z");
+        request = AddObservationsRequest.builder()
+                .observations(IntStream.range(0, OBSERVATIONS)
+                        .mapToObj(i -> AddObservationsRequestObservation.builder()
+                                .license("LICENSE_" + i)
+                                .street("Europaplein")
+                                .observationInstant(observationInstant)
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteObservations() {
+        jdbcTemplate.update("delete from vehicle_observation");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBSERVATIONS)
+    public void addObservations() {
+        observationsService.addObservations(request);
+    }
+}
@@ -0,0 +1,57 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.dto.AddObservationsRequest;
+import abn.parking.core.dto.AddObservationsRequestObservation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the deserialization of the body of {@code POST /observations} into an {@link AddObservationsRequest}, for
+ * uploads of different sizes. The object mapper is built like Spring Boot builds the one which reads the requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddObservationsRequestBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int observations;
+
+    private byte[] body;
+    private ObjectReader reader;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        var observationInstant = Instant.parse("2024-01-06T20:00:00Z");
+        body = objectMapper.writeValueAsBytes(AddObservationsRequest.builder()
+                .observations(IntStream.range(0, observations)
+                        .mapToObj(i -> AddObservationsRequestObservation.builder()
+                                .license("LICENSE_" + i)
+                                .street("Europaplein")
+                                .observationInstant(observationInstant.plus(Duration.ofSeconds(i)))
+                                .build())
+                        .toList())
+                .build());
+        reader = objectMapper.readerFor(AddObservationsRequest.class);
+    }
+
+    @Benchmark
+    public AddObservationsRequest deserializeRequest() throws IOException {
+        return reader.readValue(body);
+    }
+}
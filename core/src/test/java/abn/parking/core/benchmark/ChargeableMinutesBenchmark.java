@@ -0,0 +1,49 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.tariff.BruteForceChargeableMinutesCalculator;
+import abn.parking.core.tariff.ChargeableMinutesCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the calculation of chargeable minutes by the {@link ChargeableMinutesCalculator} with the original brute
+ * force calculation, for sessions of different lengths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChargeableMinutesBenchmark {
+
+    @Param({"PT1H", "P1D", "P30D"})
+    private String sessionDuration;
+
+    private LocalDateTime startDateTime;
+    private LocalDateTime endDateTime;
+    private ChargeableMinutesCalculator calculator;
+    private BruteForceChargeableMinutesCalculator bruteForceCalculator;
+
+    @Setup
+    public void setUp() {
+        startDateTime = LocalDateTime.of(2024, 1, 6, 7, 30, 15);
+        endDateTime = startDateTime.plus(Duration.parse(sessionDuration));
+        calculator = new ChargeableMinutesCalculator(LocalTime.of(8, 0), LocalTime.of(21, 0));
+        bruteForceCalculator = new BruteForceChargeableMinutesCalculator(LocalTime.of(8, 0), LocalTime.of(21, 0));
+    }
+
+    @Benchmark
+    public long calculate() {
+        return calculator.calculate(startDateTime, endDateTime);
+    }
+
+    @Benchmark
+    public long calculateBruteForce() {
+        return bruteForceCalculator.calculate(startDateTime, endDateTime);
+    }
+}
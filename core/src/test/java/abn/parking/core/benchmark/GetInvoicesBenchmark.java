@@ -0,0 +1,75 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.dto.GetInvoicesResponse;
+import abn.parking.core.repository.InvoiceProjection;
+import abn.parking.core.service.InvoicesService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the mapping of invoices to a {@link GetInvoicesResponse} by {@link InvoicesService#mapResponse} and its
+ * serialization to JSON, for licenses with different numbers of invoices. Every other invoice is a fine.
+ * <p>
+ * The object mapper is built like Spring Boot builds the one which writes the responses, so instants are written as
+ * ISO-8601 strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetInvoicesBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int invoices;
+
+    private List<InvoiceProjection> projections;
+    private GetInvoicesResponse response;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        var startInstant = Instant.parse("2024-01-06T08:00:00Z");
+        projections = IntStream.range(0, invoices)
+                .mapToObj(i -> {
+                    var instant = startInstant.plus(Duration.ofMinutes(i));
+                    return i % 2 == 0
+                            ? new InvoiceProjection((long) i, instant, 100L, false,
+                            "LICENSE", "Europaplein", instant.minus(Duration.ofHours(1)), instant,
+                            null, null, null)
+                            : new InvoiceProjection((long) i, instant, 10000L, true,
+                            null, null, null, null,
+                            "LICENSE", "Europaplein", instant.minus(Duration.ofMinutes(10)));
+                })
+                .toList();
+        response = InvoicesService.mapResponse(projections);
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    @Benchmark
+    public GetInvoicesResponse mapResponse() {
+        return InvoicesService.mapResponse(projections);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(InvoicesService.mapResponse(projections));
+    }
+}
@@ -0,0 +1,48 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.configuration.ParkingScheduleProperties;
+import abn.parking.core.tariff.TariffCalendar;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the calculation of chargeable minutes by the {@link TariffCalendar} (as done when a session is stopped), for
+ * sessions of different lengths which start right before a change of daylight saving time in Europe/Amsterdam, so that
+ * the conversion to local date-times has to deal with a gap (31 March 2024) or an overlap (27 October 2024).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TariffCalendarBenchmark {
+
+    @Param({"PT1H", "P1D", "P30D"})
+    private String sessionDuration;
+
+    // half an hour before summer time starts (01:30 CET) and half an hour before it ends (02:30 CEST)
+    @Param({"2024-03-31T00:30:00Z", "2024-10-27T00:30:00Z"})
+    private String startInstant;
+
+    private Instant start;
+    private Instant end;
+    private TariffCalendar calendar;
+
+    @Setup
+    public void setUp() {
+        var properties = new ParkingScheduleProperties();
+        properties.setZoneId("Europe/Amsterdam");
+        calendar = TariffCalendar.compile(properties);
+        start = Instant.parse(startInstant);
+        end = start.plus(Duration.parse(sessionDuration));
+    }
+
+    @Benchmark
+    public long calculateChargeableMinutes() {
+        return calendar.calculateChargeableMinutes("Europaplein", start, end);
+    }
+}
@@ -0,0 +1,120 @@
+package abn.parking.core.benchmark;
+
+import abn.parking.core.CoreApplication;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the platform thread mode with the virtual thread mode ({@code spring.threads.virtual.enabled}) under a
+ * burst of camera car uploads: 48 clients keep uploading 500 observations each to {@code /observations}, while 8 other
+ * clients start and stop sessions. JMH reports the throughput and the latency percentiles (p99) of both.
+ * <p>
+ * Tomcat is limited to 32 threads in both modes (virtual threads are not limited by it), so that in the platform thread
+ * mode the uploads use up all request threads, and the session requests have to wait until one of them is free. The
+ * database is an in-memory H2 database which is accessed over TCP, with a pool of 10 connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class VirtualThreadsBenchmark {
+
+    private static final int OBSERVATIONS = 500;
+
+    @Param({"false", "true"})
+    private String virtualThreads;
+
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private HttpClient client;
+    private URI baseUri;
+    private String upload;
+
+    @Setup
+    public void setUp() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        context = new SpringApplicationBuilder(CoreApplication.class)
+                .run("--spring.datasource.url=jdbc:h2:tcp://localhost:%d/mem:virtual-threads".formatted(server.getPort()),
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.hikari.maximum-pool-size=10",
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=32",
+                        // keep the verification task from running during the measurements
+                        "--observations.process.interval=1440",
+                        "--logging.level.root=warn",
+                        "--logging.level.org.springframework.web.filter.CommonsRequestLoggingFilter=warn");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into parking_rate(fine_rate, rate, street) values (10000, 100, 'Europaplein')");
+        client = HttpClient.newHttpClient();
+        baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        upload = IntStream.range(0, OBSERVATIONS)
+                .mapToObj(i -> """
+                        {"license": "LICENSE_%d", "street": "Europaplein", "observationInstant": "2024-01-06T20:00:00Z"}"""
+                        .formatted(i))
+                .collect(Collectors.joining(",", "{\"observations\": [", "]}"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteObservations() {
+        jdbcTemplate.update("delete from vehicle_observation");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        server.stop();
+    }
+
+    /**
+     * A client which starts and stops sessions for its own license.
+     */
+    @State(Scope.Thread)
+    public static class Driver {
+        private static final AtomicInteger DRIVERS = new AtomicInteger();
+
+        private final String license = "DRIVER_" + DRIVERS.incrementAndGet();
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(48)
+    public int uploadObservations() throws IOException, InterruptedException {
+        return post("/observations", upload);
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(8)
+    public int startAndStopSession(Driver driver) throws IOException, InterruptedException {
+        post("/sessions/%s/start".formatted(driver.license), "{\"street\": \"Europaplein\"}");
+        return post("/sessions/%s/stop".formatted(driver.license), "");
+    }
+
+    private int post(String path, String body) throws IOException, InterruptedException {
+        var response = client.send(HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("%s returned %d".formatted(path, response.statusCode()));
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,45 @@
+package abn.parking.core.datasource;
+
+import org.h2.jdbc.JdbcConnection;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkheadDataSourceTests {
+
+    private final BulkheadDataSource dataSource = new BulkheadDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:bulkhead", "sa", "password"), 2, 100);
+
+    @Test
+    void givenAllPermitsInUse_whenGetConnection_thenFailsAfterTimeout() throws SQLException {
+        try (var first = dataSource.getConnection(); var second = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+    }
+
+    @Test
+    void givenConnectionClosedTwice_whenGetConnection_thenOnlyOnePermitReleased() throws SQLException {
+        var first = dataSource.getConnection();
+        try (var second = dataSource.getConnection()) {
+            first.close();
+            first.close();
+
+            try (var third = dataSource.getConnection()) {
+                assertNotNull(third);
+                assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            }
+        }
+    }
+
+    @Test
+    void givenConnection_whenUnwrap_thenTargetConnectionFound() throws SQLException {
+        try (var connection = dataSource.getConnection()) {
+            assertNotNull(connection.unwrap(JdbcConnection.class));
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package abn.parking.core.load;
+
+import abn.parking.core.CoreApplication;
+import abn.parking.core.service.ObservationsService;
+import abn.parking.core.service.ParkingRateCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.tools.Server;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.support.StandardServletEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how much load one core node sustains, with an in-memory H2 database which is accessed over TCP (so every
+ * statement costs a network round trip, like it does in production). The load consists of scenarios which run at the
+ * same time:
+ * <ul>
+ *     <li>{@code uploads}: camera cars which keep uploading observations of random vehicles to {@code /observations}</li>
+ *     <li>{@code sessions}: drivers who keep starting and stopping sessions</li>
+ *     <li>{@code invoices}: clients which keep polling the invoices of random drivers and observed vehicles (with the
+ *     ETag of the last response of the license)</li>
+ *     <li>{@code verification}: the verification of the observations, every {@code load.verification-interval}
+ *     seconds (instead of every {@code observations.process.interval} minutes)</li>
+ * </ul>
+ * The throughput, the latency percentiles and histogram and the number of database statements of every scenario are
+ * reported, and written to {@code load.result} as JSON. When a {@code load.baseline} is given, the load test fails
+ * (exits with 1) when a scenario regressed by more than {@code load.max-regression} percent compared to it, or when
+ * requests failed.
+ * <p>
+ * All arguments are passed to the application, so both the {@link LoadTestProperties} and the settings of the
+ * application (like {@code --spring.threads.virtual.enabled=true}) can be given as arguments.
+ */
+public class LoadTest {
+    private static final String UPLOADS = "uploads";
+    private static final String SESSIONS = "sessions";
+    private static final String INVOICES = "invoices";
+    private static final String VERIFICATION = StatementCounter.OUTSIDE_REQUESTS;
+
+    private static final String STREET = "Europaplein";
+    private static final int VEHICLES = 10_000;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final Duration[] BUCKETS = IntStream.of(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000)
+            .mapToObj(Duration::ofMillis)
+            .toArray(Duration[]::new);
+
+    private final LoadTestProperties properties;
+    private final ObservationsService observationsService;
+    private final StatementCounter statementCounter;
+    private final ObjectMapper objectMapper;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final URI baseUri;
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+
+    private LoadTest(ConfigurableApplicationContext context) {
+        this.properties = context.getBean(LoadTestProperties.class);
+        this.observationsService = context.getBean(ObservationsService.class);
+        this.statementCounter = context.getBean(StatementCounter.class);
+        this.objectMapper = context.getBean(ObjectMapper.class);
+        this.baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        List.of(UPLOADS, SESSIONS, INVOICES, VERIFICATION).forEach(name -> scenarios.put(name, new Scenario(name)));
+
+        context.getBean(JdbcTemplate.class)
+                .update("insert into parking_rate(fine_rate, rate, street) values (10000, 100, ?)", STREET);
+        context.getBean(ParkingRateCache.class).refresh();
+    }
+
+    public static void main(String[] args) throws SQLException, IOException, InterruptedException {
+        var server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        List<String> regressions;
+        try (var context = start(server, args)) {
+            regressions = new LoadTest(context).run();
+        } finally {
+            server.stop();
+        }
+
+        regressions.forEach(regression -> System.out.println("REGRESSION: " + regression));
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext start(Server server, String[] args) {
+        var defaults = new MapPropertySource("loadTest", Map.of(
+                // the workers wait for the balances which are locked by each other's chunks, like they do on Postgres,
+                // instead of failing after the lock timeout of H2 (1 second)
+                "spring.datasource.url", "jdbc:h2:tcp://localhost:%d/mem:load-test;LOCK_TIMEOUT=60000".formatted(server.getPort()),
+                "server.port", "0",
+                // the verification is run by the load test, and the other scheduled tasks don't run at all
+                "observations.process.interval", "1440",
+                "parking.rates.refresh-interval", "3600",
+                // the chunks and workers of the local profile instead of the small chunks and single worker of the tests
+                "observations.process.chunk-size", "1000",
+                "observations.process.workers", "4",
+                "logging.level.root", "warn",
+                "logging.level.org.springframework.web.filter.CommonsRequestLoggingFilter", "warn"));
+
+        // the defaults override the properties of the tests, and are overridden by the arguments (which are added first)
+        var environment = new StandardServletEnvironment();
+        environment.getPropertySources().addFirst(defaults);
+
+        return new SpringApplicationBuilder(CoreApplication.class, LoadTestConfiguration.class)
+                .environment(environment)
+                // test configurations (like the fixed clock of the tests) are only excluded from scanning in tests
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("testConfigurationExcludeFilter", new TestConfigurationExcludeFilter()))
+                .run(args);
+    }
+
+    private List<String> run() throws IOException, InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getWarmup() + properties.getDuration());
+        var clients = new ArrayList<Thread>();
+        IntStream.range(0, properties.getUploaders())
+                .forEach(uploader -> clients.add(client(deadline, this::upload)));
+        IntStream.range(0, properties.getDrivers())
+                .forEach(driver -> clients.add(client(deadline, () -> startAndStopSession("DRIVER_" + driver))));
+        IntStream.range(0, properties.getPollers())
+                .forEach(poller -> clients.add(client(deadline, new InvoicesPoller()::poll)));
+        clients.add(client(deadline, () -> verify(deadline)));
+
+        System.out.printf("Warming up for %d seconds%n", properties.getWarmup());
+        TimeUnit.SECONDS.sleep(properties.getWarmup());
+        scenarios.values().forEach(Scenario::reset);
+        statementCounter.reset();
+        var measurementStart = System.nanoTime();
+        System.out.printf("Measuring for %d seconds%n", properties.getDuration());
+        for (var client : clients) {
+            client.join();
+        }
+        var measured = Duration.ofNanos(System.nanoTime() - measurementStart);
+
+        var result = new LoadTestResult(properties.getDuration(), properties.getUploaders(), properties.getUploadSize(),
+                properties.getDrivers(), properties.getPollers(), properties.getVerificationInterval(),
+                scenarios.values().stream().map(scenario -> scenario.result(measured)).toList());
+        print(result);
+        var resultFile = new File(properties.getResult());
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(resultFile, result);
+        System.out.printf("Results written to %s%n", resultFile.getAbsolutePath());
+
+        if (properties.getBaseline() == null) {
+            return List.of();
+        }
+        return compare(result, objectMapper.readValue(new File(properties.getBaseline()), LoadTestResult.class));
+    }
+
+    private static Thread client(long deadline, Runnable operation) {
+        return Thread.ofPlatform().start(() -> {
+            while (System.nanoTime() < deadline) {
+                operation.run();
+            }
+        });
+    }
+
+    private void upload() {
+        var observationInstant = Instant.now();
+        var body = ThreadLocalRandom.current().ints(properties.getUploadSize(), 0, VEHICLES)
+                .mapToObj(vehicle -> """
+                        {"license": "VEHICLE_%d", "street": "%s", "observationInstant": "%s"}"""
+                        .formatted(vehicle, STREET, observationInstant))
+                .collect(Collectors.joining(",", "{\"observations\": [", "]}"));
+        scenarios.get(UPLOADS).record(() -> post(UPLOADS, "/observations", body));
+    }
+
+    private void startAndStopSession(String license) {
+        var scenario = scenarios.get(SESSIONS);
+        scenario.record(() -> post(SESSIONS, "/sessions/%s/start".formatted(license), "{\"street\": \"%s\"}".formatted(STREET)));
+        scenario.record(() -> post(SESSIONS, "/sessions/%s/stop".formatted(license), ""));
+    }
+
+    private void verify(long deadline) {
+        var interval = TimeUnit.SECONDS.toNanos(properties.getVerificationInterval());
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.min(interval, deadline - System.nanoTime()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (System.nanoTime() < deadline) {
+            scenarios.get(VERIFICATION).record(() -> {
+                observationsService.verifyObservations();
+                return true;
+            });
+        }
+    }
+
+    private boolean post(String scenario, String path, String body) throws IOException, InterruptedException {
+        var response = client.send(HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .header(LoadTestConfiguration.SCENARIO_HEADER, scenario)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        return response.statusCode() / 100 == 2;
+    }
+
+    /**
+     * A client which polls the invoices of random licenses, and remembers the ETag of every license it polled.
+     */
+    private class InvoicesPoller {
+        private final Map<String, String> eTags = new HashMap<>();
+
+        void poll() {
+            var random = ThreadLocalRandom.current();
+            var license = random.nextBoolean()
+                    ? "DRIVER_" + random.nextInt(Math.max(properties.getDrivers(), 1))
+                    : "VEHICLE_" + random.nextInt(VEHICLES);
+            scenarios.get(INVOICES).record(() -> {
+                var request = HttpRequest.newBuilder(baseUri.resolve("/invoices?license=" + license))
+                        .header(LoadTestConfiguration.SCENARIO_HEADER, INVOICES);
+                var eTag = eTags.get(license);
+                if (eTag != null) {
+                    request.header("If-None-Match", eTag);
+                }
+                var response = client.send(request.GET().build(), HttpResponse.BodyHandlers.discarding());
+                response.headers().firstValue("ETag").ifPresent(value -> eTags.put(license, value));
+                return response.statusCode() == 200 || response.statusCode() == 304;
+            });
+        }
+    }
+
+    private List<String> compare(LoadTestResult result, LoadTestResult baseline) {
+        var maxRegression = properties.getMaxRegression() / 100;
+        var regressions = new ArrayList<String>();
+        for (var base : baseline.scenarios()) {
+            var current = result.scenarios().stream()
+                    .filter(scenario -> scenario.scenario().equals(base.scenario()))
+                    .findFirst()
+                    .orElse(null);
+            if (current == null) {
+                regressions.add("%s: not measured".formatted(base.scenario()));
+                continue;
+            }
+
+            if (current.errors() > 0) {
+                regressions.add("%s: %d errors".formatted(current.scenario(), current.errors()));
+            }
+            if (current.throughput() < base.throughput() * (1 - maxRegression)) {
+                regressions.add("%s: throughput of %.1f/s, against %.1f/s in the baseline"
+                        .formatted(current.scenario(), current.throughput(), base.throughput()));
+            }
+            var p99 = current.latency().get("p99");
+            var baseP99 = base.latency().get("p99");
+            if (p99 != null && baseP99 != null && p99 > baseP99 * (1 + maxRegression)) {
+                regressions.add("%s: p99 latency of %.1f ms, against %.1f ms in the baseline"
+                        .formatted(current.scenario(), p99, baseP99));
+            }
+            if (current.statementsPerOperation() > base.statementsPerOperation() * (1 + maxRegression)) {
+                regressions.add("%s: %.2f statements per operation, against %.2f in the baseline"
+                        .formatted(current.scenario(), current.statementsPerOperation(), base.statementsPerOperation()));
+            }
+        }
+        return regressions;
+    }
+
+    private static void print(LoadTestResult result) {
+        System.out.printf("%-13s %10s %7s %10s %9s %9s %9s %9s %9s %11s %9s%n", "Scenario", "Operations", "Errors",
+                "Ops/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "Max ms", "Statements", "Stmts/op");
+        for (var scenario : result.scenarios()) {
+            var latency = scenario.latency();
+            System.out.printf("%-13s %10d %7d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f %11d %9.2f%n", scenario.scenario(),
+                    scenario.operations(), scenario.errors(), scenario.throughput(), latency.get("p50"), latency.get("p90"),
+                    latency.get("p99"), latency.get("p999"), latency.get("max"), scenario.statements(),
+                    scenario.statementsPerOperation());
+        }
+        for (var scenario : result.scenarios()) {
+            System.out.printf("%s latency histogram (operations <= ms): %s%n", scenario.scenario(), scenario.histogram());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        boolean run() throws Exception;
+    }
+
+    private class Scenario {
+        private final String name;
+        private final LongAdder errors = new LongAdder();
+        private final AtomicBoolean errorReported = new AtomicBoolean();
+        private volatile Timer timer;
+
+        Scenario(String name) {
+            this.name = name;
+            this.timer = newTimer();
+        }
+
+        void record(Operation operation) {
+            var start = System.nanoTime();
+            boolean succeeded;
+            try {
+                succeeded = operation.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                succeeded = false;
+            } catch (Exception e) {
+                if (!errorReported.getAndSet(true)) {
+                    System.err.printf("First error of %s: %s%n", name, e);
+                }
+                succeeded = false;
+            }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!succeeded) {
+                errors.increment();
+            }
+        }
+
+        // forgets the operations of the warmup
+        void reset() {
+            timer = newTimer();
+            errors.reset();
+        }
+
+        ScenarioResult result(Duration measured) {
+            var snapshot = timer.takeSnapshot();
+            var latency = new LinkedHashMap<String, Double>();
+            var percentiles = snapshot.percentileValues();
+            for (var i = 0; i < percentiles.length; i++) {
+                latency.put(PERCENTILE_NAMES[i], percentiles[i].value(TimeUnit.MILLISECONDS));
+            }
+            latency.put("max", snapshot.max(TimeUnit.MILLISECONDS));
+
+            var histogram = new LinkedHashMap<String, Long>();
+            for (var bucket : snapshot.histogramCounts()) {
+                histogram.put("%.0f".formatted(bucket.bucket(TimeUnit.MILLISECONDS)), (long) bucket.count());
+            }
+            histogram.put("+Inf", snapshot.count());
+
+            var operations = snapshot.count();
+            var statements = statementCounter.get(name);
+            return new ScenarioResult(name, operations, errors.sum(), operations * 1000.0 / measured.toMillis(),
+                    latency, histogram, statements, operations == 0 ? 0 : (double) statements / operations);
+        }
+
+        private Timer newTimer() {
+            // one histogram for the whole measurement, instead of the default rolling window of a few minutes
+            return Timer.builder("load." + name)
+                    .publishPercentiles(PERCENTILES)
+                    .percentilePrecision(2)
+                    .serviceLevelObjectives(BUCKETS)
+                    .distributionStatisticExpiry(Duration.ofDays(1))
+                    .distributionStatisticBufferLength(1)
+                    .register(new SimpleMeterRegistry());
+        }
+    }
+
+    // Excludes test configurations from the component scan, like Spring Boot does in tests.
+    private static class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package abn.parking.core.load;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * The beans which the {@link LoadTest} adds to the core application: the counting of the database statements, and a
+ * filter which attributes every request to the scenario in its {@value #SCENARIO_HEADER} header.
+ * <p>
+ * It is not annotated as a configuration, so that it is only used when the load test passes it to the application, and
+ * not found by the component scan of the tests and the benchmarks.
+ */
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestConfiguration {
+    static final String SCENARIO_HEADER = "X-Load-Scenario";
+
+    @Bean
+    public static StatementCounter statementCounter() {
+        return new StatementCounter();
+    }
+
+    // static, as it post-processes the beans of the other configurations
+    @Bean
+    public static BeanPostProcessor statementCountingPostProcessor(ObjectProvider<StatementCounter> statementCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+                    return new StatementCountingDataSource(dataSource, statementCounter.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public OncePerRequestFilter scenarioFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                StatementCounter.setScenario(request.getHeader(SCENARIO_HEADER));
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    StatementCounter.clearScenario();
+                }
+            }
+        };
+    }
+}
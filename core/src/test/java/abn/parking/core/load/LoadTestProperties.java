@@ -0,0 +1,63 @@
+package abn.parking.core.load;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "load")
+@Getter
+@Setter
+public class LoadTestProperties {
+    /**
+     * The time (in seconds) during which the scenarios are measured, after the warmup.
+     */
+    long duration = 60;
+
+    /**
+     * The time (in seconds) during which the scenarios run before they are measured.
+     */
+    long warmup = 10;
+
+    /**
+     * The number of camera cars which keep uploading observations to {@code POST /observations}.
+     */
+    int uploaders = 4;
+
+    /**
+     * The number of observations of every upload.
+     */
+    int uploadSize = 500;
+
+    /**
+     * The number of drivers who keep starting and stopping sessions.
+     */
+    int drivers = 16;
+
+    /**
+     * The number of clients which keep polling the invoices of drivers and of observed vehicles.
+     */
+    int pollers = 8;
+
+    /**
+     * The time (in seconds) between the end of a verification run and the start of the next.
+     */
+    long verificationInterval = 5;
+
+    /**
+     * The file to which the results are written as JSON.
+     */
+    String result = "target/load-test-result.json";
+
+    /**
+     * The file with the results of an earlier run (like a stored {@link #result}) to compare the results with. The load
+     * test fails when a scenario regressed by more than {@link #maxRegression} percent compared to it. Without a
+     * baseline the results are only reported.
+     */
+    String baseline;
+
+    /**
+     * The percentage by which the throughput of a scenario may be lower, and its p99 latency and its number of database
+     * statements per operation may be higher, than in the baseline.
+     */
+    double maxRegression = 20;
+}
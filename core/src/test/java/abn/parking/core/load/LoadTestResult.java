@@ -0,0 +1,10 @@
+package abn.parking.core.load;
+
+import java.util.List;
+
+/**
+ * The results of all scenarios of a {@link LoadTest}, with the settings with which they were measured.
+ */
+public record LoadTestResult(long duration, int uploaders, int uploadSize, int drivers, int pollers,
+                             long verificationInterval, List<ScenarioResult> scenarios) {
+}
@@ -0,0 +1,18 @@
+package abn.parking.core.load;
+
+import java.util.Map;
+
+/**
+ * The results of a scenario of a {@link LoadTest}, as written to (and read from) JSON.
+ *
+ * @param operations the number of requests (or verification runs) during the measurement
+ * @param errors     the number of requests which failed
+ * @param throughput the number of operations per second
+ * @param latency    the latency percentiles (p50, p90, p99, p999 and max) in milliseconds
+ * @param histogram  the number of operations which took at most the number of milliseconds of every bucket
+ * @param statements the number of database statements which were executed for the operations
+ */
+public record ScenarioResult(String scenario, long operations, long errors, double throughput,
+                             Map<String, Double> latency, Map<String, Long> histogram,
+                             long statements, double statementsPerOperation) {
+}
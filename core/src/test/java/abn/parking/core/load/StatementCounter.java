@@ -0,0 +1,43 @@
+package abn.parking.core.load;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the database statements which are executed per scenario. Requests are attributed to the scenario of the
+ * client which sent them (see {@link LoadTestConfiguration}), and all statements which are executed outside requests to
+ * the verification scenario, as the other scheduled tasks are disabled during a load test.
+ */
+public class StatementCounter {
+    static final String OUTSIDE_REQUESTS = "verification";
+
+    private static final ThreadLocal<String> SCENARIO = new ThreadLocal<>();
+
+    private final Map<String, LongAdder> statements = new ConcurrentHashMap<>();
+
+    /**
+     * Attributes the statements of the current thread to a scenario, until {@link #clearScenario()} is called.
+     */
+    public static void setScenario(String scenario) {
+        SCENARIO.set(scenario);
+    }
+
+    public static void clearScenario() {
+        SCENARIO.remove();
+    }
+
+    public void count() {
+        var scenario = SCENARIO.get();
+        statements.computeIfAbsent(scenario == null ? OUTSIDE_REQUESTS : scenario, key -> new LongAdder()).increment();
+    }
+
+    public long get(String scenario) {
+        var adder = statements.get(scenario);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+}
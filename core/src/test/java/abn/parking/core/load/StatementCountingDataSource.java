@@ -0,0 +1,66 @@
+package abn.parking.core.load;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Counts every execution of a statement (a batch counts as one, as it is sent in one round trip) with the
+ * {@link StatementCounter}.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+    private final StatementCounter statementCounter;
+
+    public StatementCountingDataSource(DataSource targetDataSource, StatementCounter statementCounter) {
+        super(targetDataSource);
+        this.statementCounter = statementCounter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countStatements(super.getConnection(username, password));
+    }
+
+    private Connection countStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    var result = invoke(connection, method, args);
+                    return switch (method.getName()) {
+                        case "createStatement" -> countExecutions((Statement) result, Statement.class);
+                        case "prepareStatement" -> countExecutions((Statement) result, PreparedStatement.class);
+                        case "prepareCall" -> countExecutions((Statement) result, CallableStatement.class);
+                        default -> result;
+                    };
+                });
+    }
+
+    private Object countExecutions(Statement statement, Class<? extends Statement> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                statementCounter.count();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
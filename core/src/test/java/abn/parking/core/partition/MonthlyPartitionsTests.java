@@ -0,0 +1,48 @@
+package abn.parking.core.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonthlyPartitionsTests {
+
+    private static final MonthlyPartitions PARTITIONS = new MonthlyPartitions("vehicle_observation");
+
+    @Test
+    void givenMonth_whenCreateStatement_thenPartitionCoversMonthInUtc() {
+        var statement = PARTITIONS.createStatement(YearMonth.of(2024, 12));
+
+        assertEquals("CREATE TABLE IF NOT EXISTS vehicle_observation_2024_12 PARTITION OF vehicle_observation "
+                + "FOR VALUES FROM ('2024-12-01T00:00:00Z') TO ('2025-01-01T00:00:00Z')", statement);
+    }
+
+    @Test
+    void givenPartitionNames_whenMonthOf_thenOnlyMonthlyPartitionsHaveMonth() {
+        assertEquals(Optional.of(YearMonth.of(2024, 1)), PARTITIONS.monthOf("vehicle_observation_2024_01"));
+        assertEquals(Optional.empty(), PARTITIONS.monthOf("vehicle_observation_default"));
+        assertEquals(Optional.empty(), PARTITIONS.monthOf("vehicle_observation_legacy"));
+        assertEquals(Optional.empty(), PARTITIONS.monthOf("parking_session_2024_01"));
+    }
+
+    @Test
+    void givenCurrentMonth_whenMonthsToCreate_thenCurrentAndNextMonths() {
+        var months = MonthlyPartitions.monthsToCreate(YearMonth.of(2024, 11), 2);
+
+        assertEquals(List.of(YearMonth.of(2024, 11), YearMonth.of(2024, 12), YearMonth.of(2025, 1)), months);
+    }
+
+    @Test
+    void givenRetention_whenIsExpired_thenOnlyMonthsBeforeRetentionExpired() {
+        var currentMonth = YearMonth.of(2024, 6);
+
+        assertTrue(MonthlyPartitions.isExpired(YearMonth.of(2024, 2), currentMonth, 3));
+        assertFalse(MonthlyPartitions.isExpired(YearMonth.of(2024, 3), currentMonth, 3));
+        assertFalse(MonthlyPartitions.isExpired(YearMonth.of(2020, 1), currentMonth, 0));
+    }
+}
@@ -0,0 +1,141 @@
+package abn.parking.core.partition;
+
+import abn.parking.core.configuration.PartitioningProperties;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+// Maintains the partitions of a schema which is migrated with the Postgres migrations. There is no Postgres in the
+// default build, so these tests only run when POSTGRES_URL (and POSTGRES_USERNAME and POSTGRES_PASSWORD) point to a
+// Postgres database, in which the tests create (and drop) their own schema.
+@EnabledIfEnvironmentVariable(named = "POSTGRES_URL", matches = ".+")
+class PartitionMaintenanceTests {
+    private static final String SCHEMA = "partition_maintenance_tests";
+    private static final MonthlyPartitions OBSERVATIONS = new MonthlyPartitions("vehicle_observation");
+    private static final MonthlyPartitions SESSIONS = new MonthlyPartitions("parking_session");
+
+    private final YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+    private final PartitioningProperties partitioningProperties = new PartitioningProperties();
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void migrate() {
+        var dataSource = new DriverManagerDataSource(System.getenv("POSTGRES_URL"), System.getenv("POSTGRES_USERNAME"),
+                System.getenv("POSTGRES_PASSWORD"));
+        dataSource.setSchema(SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        Flyway.configure().dataSource(dataSource).schemas(SCHEMA)
+                .locations("classpath:db/migration/common", "classpath:db/migration/postgresql")
+                .load().migrate();
+        partitioningProperties.setMonthsAhead(3);
+    }
+
+    @AfterEach
+    void dropSchema() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void givenMigratedTables_whenMaintainPartitions_thenCurrentAndNextMonthsCreated() {
+        maintainPartitions(currentMonth);
+
+        assertThat(findPartitions(OBSERVATIONS), containsInAnyOrder("vehicle_observation_legacy", "vehicle_observation_default",
+                OBSERVATIONS.name(currentMonth), OBSERVATIONS.name(currentMonth.plusMonths(1)),
+                OBSERVATIONS.name(currentMonth.plusMonths(2)), OBSERVATIONS.name(currentMonth.plusMonths(3))));
+        assertThat(findPartitions(SESSIONS), containsInAnyOrder("parking_session_legacy", "parking_session_default",
+                SESSIONS.name(currentMonth), SESSIONS.name(currentMonth.plusMonths(1)),
+                SESSIONS.name(currentMonth.plusMonths(2)), SESSIONS.name(currentMonth.plusMonths(3))));
+
+        // maintaining them again changes nothing
+        maintainPartitions(currentMonth);
+        assertThat(findPartitions(OBSERVATIONS).size(), is(6));
+    }
+
+    @Test
+    void givenRowsInMonthlyPartitions_whenQueryMonth_thenOnlyPartitionOfMonthScanned() {
+        maintainPartitions(currentMonth);
+        insertObservation(currentMonth, true);
+        insertObservation(currentMonth.plusMonths(1), true);
+        insertObservation(currentMonth.plusMonths(2), true);
+
+        var plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT count(*) FROM vehicle_observation WHERE observation_instant >= '%s' AND observation_instant < '%s'"
+                        .formatted(start(currentMonth.plusMonths(1)), start(currentMonth.plusMonths(2))), String.class));
+
+        assertThat(plan, containsString(OBSERVATIONS.name(currentMonth.plusMonths(1))));
+        assertThat(plan, not(containsString(OBSERVATIONS.name(currentMonth))));
+        assertThat(plan, not(containsString(OBSERVATIONS.name(currentMonth.plusMonths(2)))));
+        assertThat(plan, not(containsString("vehicle_observation_legacy")));
+        assertThat(plan, not(containsString("vehicle_observation_default")));
+    }
+
+    @Test
+    void givenExpiredPartitions_whenMaintainPartitions_thenDetachedUnlessInUse() {
+        maintainPartitions(currentMonth);
+        insertObservation(currentMonth, true);
+        insertObservation(currentMonth.plusMonths(1), false);
+        jdbcTemplate.update("INSERT INTO parking_session (license, street, start_instant, end_instant) VALUES ('STOPPED', 'Europaplein', ?, ?)",
+                start(currentMonth), start(currentMonth).plusHours(1));
+        jdbcTemplate.update("INSERT INTO parking_session (license, street, start_instant) VALUES ('PARKING', 'Europaplein', ?)",
+                start(currentMonth.plusMonths(1)));
+
+        // half a year later, only the partitions of the last 2 months are kept
+        var laterMonth = currentMonth.plusMonths(6);
+        partitioningProperties.setRetentionMonths(2);
+        maintainPartitions(laterMonth);
+
+        // the partitions with the unverified observation and the open session are still in use
+        assertThat(findPartitions(OBSERVATIONS), containsInAnyOrder("vehicle_observation_legacy", "vehicle_observation_default",
+                OBSERVATIONS.name(currentMonth.plusMonths(1)), OBSERVATIONS.name(laterMonth),
+                OBSERVATIONS.name(laterMonth.plusMonths(1)), OBSERVATIONS.name(laterMonth.plusMonths(2)),
+                OBSERVATIONS.name(laterMonth.plusMonths(3))));
+        assertThat(findPartitions(SESSIONS), containsInAnyOrder("parking_session_legacy", "parking_session_default",
+                SESSIONS.name(currentMonth.plusMonths(1)), SESSIONS.name(laterMonth),
+                SESSIONS.name(laterMonth.plusMonths(1)), SESSIONS.name(laterMonth.plusMonths(2)),
+                SESSIONS.name(laterMonth.plusMonths(3))));
+
+        // detached partitions are kept as tables, with their rows
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + OBSERVATIONS.name(currentMonth), Long.class), is(1L));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM vehicle_observation", Long.class), is(1L));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + SESSIONS.name(currentMonth), Long.class), is(1L));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM parking_session", Long.class), is(1L));
+    }
+
+    private void maintainPartitions(YearMonth month) {
+        var clock = Clock.fixed(start(month).toInstant(), ZoneOffset.UTC);
+        new PartitionMaintenance(clock, jdbcTemplate, partitioningProperties).maintainPartitions();
+    }
+
+    private void insertObservation(YearMonth month, boolean verified) {
+        jdbcTemplate.update("INSERT INTO vehicle_observation (license, street, observation_instant, verified) VALUES ('OBSERVED', 'Europaplein', ?, ?)",
+                start(month).plusDays(1), verified);
+    }
+
+    private List<String> findPartitions(MonthlyPartitions partitions) {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(?)""", String.class, partitions.table());
+    }
+
+    private static OffsetDateTime start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+}
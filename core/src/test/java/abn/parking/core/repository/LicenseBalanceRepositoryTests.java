@@ -0,0 +1,89 @@
+package abn.parking.core.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+@SpringBootTest
+@Sql(scripts = {"/sql/clean.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class LicenseBalanceRepositoryTests {
+
+    @Autowired
+    private LicenseBalanceRepository licenseBalanceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void givenBalanceCreatedByConcurrentTransaction_whenInsertInvoices_thenAddedToThatBalance() throws Exception {
+        var inserted = new CountDownLatch(1);
+
+        // the first transaction creates the balance and commits it while the second one tries to create it as well
+        var first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            insertInvoice(100, false);
+            inserted.countDown();
+            sleep();
+        }));
+        inserted.await(5, TimeUnit.SECONDS);
+        transactionTemplate.executeWithoutResult(status -> {
+            insertInvoice(200, false);
+            insertInvoice(400, true);
+        });
+        first.get(5, TimeUnit.SECONDS);
+
+        var balance = licenseBalanceRepository.findById("CONCURRENT").orElseThrow();
+        assertThat(balance.getOpenBalance(), is(300L));
+        assertThat(balance.getUnpaidCount(), is(2L));
+        assertThat(balance.getVersion(), is(3L));
+    }
+
+    @Test
+    void givenUnpaidInvoices_whenPaidAndDeletedOutsideCore_thenBalanceFollowed() {
+        insertInvoice(100, false);
+        insertInvoice(200, false);
+
+        // like the admin application, which doesn't set the paid instant
+        jdbcTemplate.update("update parking_invoice set paid = true where amount = 100");
+
+        var balance = licenseBalanceRepository.findById("CONCURRENT").orElseThrow();
+        assertThat(balance.getOpenBalance(), is(200L));
+        assertThat(balance.getUnpaidCount(), is(1L));
+        assertThat(balance.getVersion(), is(3L));
+        assertThat(jdbcTemplate.queryForObject("select paid_instant from parking_invoice where amount = 100", Object.class),
+                notNullValue());
+
+        jdbcTemplate.update("delete from parking_invoice where amount = 200");
+
+        balance = licenseBalanceRepository.findById("CONCURRENT").orElseThrow();
+        assertThat(balance.getOpenBalance(), is(0L));
+        assertThat(balance.getUnpaidCount(), is(0L));
+        assertThat(balance.getVersion(), is(4L));
+    }
+
+    private void insertInvoice(long amount, boolean paid) {
+        jdbcTemplate.update("insert into parking_invoice (license, amount, paid, invoice_instant) "
+                + "values ('CONCURRENT', ?, ?, timestamp with time zone '2024-01-06 21:00:00+00')", amount, paid);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package abn.parking.core.repository;
+
+import abn.parking.core.entity.VehicleObservation;
+import abn.parking.core.repository.StatementRecordingDataSource.RecordedStatement;
+import org.hamcrest.Matcher;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+
+// Checks that the queries on the hot paths use the indexes created by the migrations, instead of scanning the tables.
+// The statements which the repositories send are recorded, and explained by H2 with the same parameters. As there is
+// no Postgres to explain them, the statements which should use a partial index of Postgres are checked to contain the
+// condition of that index, which Postgres needs to be able to use it.
+@SpringBootTest
+class QueryPlanTests {
+    private static final Instant INSTANT = Instant.parse("2024-01-06T20:00:00Z");
+    private static final Pattern PARTIAL_INDEX = Pattern.compile(
+            "create\\s+(?:unique\\s+)?index\\s+(\\w+)\\s+on\\s+\\w+\\s*\\([^)]*\\)\\s*where\\s+([^;]+);", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VehicleObservationRepository vehicleObservationRepository;
+
+    @Autowired
+    private ParkingSessionRepository parkingSessionRepository;
+
+    @Autowired
+    private OpenParkingSessionRepository openParkingSessionRepository;
+
+    @Autowired
+    private ParkingInvoiceRepository parkingInvoiceRepository;
+
+    @Test
+    void givenClaimUnverifiedObservations_whenExplain_thenUnverifiedIndexUsed() {
+        var statement = recordSingle(() -> vehicleObservationRepository.claimUnverifiedAfter(0L, INSTANT, 10));
+
+        assertIndexUsed(statement, "VEHICLE_OBSERVATION_UNVERIFIED_IDX");
+        assertPartialIndexCondition(statement, "vehicle_observation_unverified_idx");
+    }
+
+    @Test
+    void givenClaimUnverifiedObservationIds_whenExplain_thenUnverifiedIndexUsed() {
+        var statement = recordSingle(() -> vehicleObservationRepository.claimUnverifiedIdsAfter(0L, INSTANT, 10));
+
+        assertIndexUsed(statement, "VEHICLE_OBSERVATION_UNVERIFIED_IDX");
+        assertPartialIndexCondition(statement, "vehicle_observation_unverified_idx");
+    }
+
+    @Test
+    void givenFindOpenSession_whenExplain_thenPrimaryKeyUsed() {
+        var statement = recordSingle(() -> openParkingSessionRepository.findLockedByLicense("TEST_LICENSE"));
+
+        assertIndexUsed(statement, "PRIMARY_KEY");
+    }
+
+    @Test
+    void givenFindSessionByIdAndStartInstant_whenExplain_thenPrimaryKeyUsed() {
+        var statement = recordSingle(() -> parkingSessionRepository.findByIdAndStartInstant(1L, INSTANT));
+
+        assertIndexUsed(statement, "PRIMARY_KEY");
+    }
+
+    @Test
+    void givenFindStoppedSessionsForObservation_whenExplain_thenLicenseStreetStartIndexUsed() {
+        var observation = new VehicleObservation();
+        observation.setLicense("TEST_LICENSE");
+        observation.setStreet("Europaplein");
+        observation.setObservationInstant(INSTANT);
+
+        var statement = recordSingle(() -> parkingSessionRepository.findStoppedSessionsForObservation(observation, INSTANT.minusSeconds(3600)));
+
+        assertIndexUsed(statement, "PARKING_SESSION_LICENSE_STREET_START_IDX");
+    }
+
+    @Test
+    void givenFindInvoicesByLicense_whenExplain_thenLicenseInstantIndexUsed() {
+        var statement = recordSingle(() -> parkingInvoiceRepository.findAllByLicense("TEST_LICENSE"));
+
+        assertIndexUsed(statement, "PARKING_INVOICE_LICENSE_INSTANT_IDX");
+    }
+
+    @Test
+    void givenFindInvoicesPageAfterPosition_whenExplain_thenLicenseInstantIndexUsed() {
+        var filter = new InvoiceFilter("TEST_LICENSE", null, null, null, null);
+
+        var statement = recordSingle(() -> parkingInvoiceRepository.findPage(filter, new InvoicePosition(INSTANT, 100L), 51));
+
+        assertIndexUsed(statement, "PARKING_INVOICE_LICENSE_INSTANT_IDX");
+    }
+
+    @Test
+    void givenFindUnpaidInvoicesPage_whenExplain_thenPaidLicenseInstantIndexUsed() {
+        var filter = new InvoiceFilter("TEST_LICENSE", false, null, null, null);
+
+        var statement = recordSingle(() -> parkingInvoiceRepository.findPage(filter, null, 51));
+
+        assertIndexUsed(statement, "PARKING_INVOICE_PAID_LICENSE_INSTANT_IDX", "PARKING_INVOICE_LICENSE_INSTANT_IDX");
+        assertPartialIndexCondition(statement, "parking_invoice_unpaid_license_instant_idx");
+    }
+
+    // runs the repository method in a transaction (for the locking queries), and returns the statement it executed
+    private RecordedStatement recordSingle(Runnable repositoryMethod) {
+        var statements = StatementRecordingDataSource.record(() -> transactionTemplate.executeWithoutResult(status -> repositoryMethod.run()));
+        assertThat(statements, hasSize(1));
+        return statements.getFirst();
+    }
+
+    private void assertIndexUsed(RecordedStatement statement, String... indexes) {
+        var plan = jdbcTemplate.queryForObject("EXPLAIN " + statement.sql(), String.class, statement.parameters());
+        assertThat(plan, anyOf(Arrays.stream(indexes).<Matcher<? super String>>map(Matchers::containsString).toList()));
+        assertThat(plan, not(containsString("tableScan")));
+    }
+
+    private static void assertPartialIndexCondition(RecordedStatement statement, String index) {
+        var condition = postgresPartialIndexConditions().get(index);
+        assertThat("partial index " + index, condition, Matchers.notNullValue());
+        assertThat(normalize(statement.sql()), containsString(normalize(condition)));
+    }
+
+    // the conditions of the partial indexes created by the Postgres migrations, by index name (later migrations win)
+    private static Map<String, String> postgresPartialIndexConditions() {
+        var conditions = new HashMap<String, String>();
+        try {
+            var migrations = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/postgresql/*.sql");
+            Arrays.sort(migrations, (first, second) -> migrationVersion(first) - migrationVersion(second));
+            for (var migration : migrations) {
+                var matcher = PARTIAL_INDEX.matcher(migration.getContentAsString(StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    conditions.put(matcher.group(1).toLowerCase(Locale.ROOT), matcher.group(2));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return conditions;
+    }
+
+    private static int migrationVersion(Resource migration) {
+        var filename = migration.getFilename();
+        return Integer.parseInt(filename.substring(1, filename.indexOf("__")));
+    }
+
+    // ignores case and white space, as the column may be written with or without spaces around the operator
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    @TestConfiguration
+    static class RecordingConfiguration {
+        @Bean
+        static BeanPostProcessor statementRecordingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new StatementRecordingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
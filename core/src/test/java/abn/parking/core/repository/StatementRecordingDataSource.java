@@ -0,0 +1,86 @@
+package abn.parking.core.repository;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Records the SQL and the parameters of every prepared statement which is executed by the current thread, while
+ * {@link #record} is running.
+ */
+public class StatementRecordingDataSource extends DelegatingDataSource {
+    private static final ThreadLocal<List<RecordedStatement>> RECORDED = new ThreadLocal<>();
+
+    public StatementRecordingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Runs the action, and returns the statements which it executed.
+     */
+    public static List<RecordedStatement> record(Runnable action) {
+        RECORDED.set(new ArrayList<>());
+        try {
+            action.run();
+            return RECORDED.get();
+        } finally {
+            RECORDED.remove();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return recordStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return recordStatements(super.getConnection(username, password));
+    }
+
+    private Connection recordStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    var result = invoke(connection, method, args);
+                    return method.getName().equals("prepareStatement")
+                            ? recordExecutions((PreparedStatement) result, (String) args[0])
+                            : result;
+                });
+    }
+
+    private Object recordExecutions(PreparedStatement statement, String sql) {
+        var parameters = new TreeMap<Integer, Object>();
+        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        parameters.put(index, method.getName().equals("setNull") ? null : args[1]);
+                    } else if (method.getName().startsWith("execute") && RECORDED.get() != null) {
+                        RECORDED.get().add(new RecordedStatement(sql, parameters.values().toArray()));
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A statement which was executed, with the values of its parameters in order.
+     */
+    public record RecordedStatement(String sql, Object[] parameters) {
+    }
+}
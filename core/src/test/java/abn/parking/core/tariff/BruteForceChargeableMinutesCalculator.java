@@ -0,0 +1,56 @@
+package abn.parking.core.tariff;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The original calculation of chargeable minutes, which iterates over every minute in the session. It is kept as the
+ * reference for the {@link ChargeableMinutesCalculator}, which needs to produce exactly the same results. Next to
+ * Sundays, it also supports any other set of chargeable days and holidays.
+ */
+public class BruteForceChargeableMinutesCalculator {
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final Set<DayOfWeek> chargeableDays;
+    private final Collection<LocalDate> holidays;
+
+    public BruteForceChargeableMinutesCalculator(LocalTime startTime, LocalTime endTime) {
+        this(startTime, endTime, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), Set.of());
+    }
+
+    public BruteForceChargeableMinutesCalculator(LocalTime startTime, LocalTime endTime, Set<DayOfWeek> chargeableDays,
+                                                 Collection<LocalDate> holidays) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.chargeableDays = chargeableDays;
+        this.holidays = holidays;
+    }
+
+    public long calculate(LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        var totalChargeableMinutes = 0L;
+
+        var current = startDateTime;
+        var parkingPeriodStart = startTime.minus(Duration.ofMillis(1));
+        var parkingPeriodEnd = endTime;
+        while (current.isBefore(endDateTime)) {
+
+            if (current.toLocalTime().isAfter(parkingPeriodStart) // if the current minute is after the start of the parking period
+                    && current.toLocalTime().isBefore(parkingPeriodEnd) // and the current minute is before the end of the parking period
+                    && chargeableDays.contains(current.getDayOfWeek()) // and the current minute is on a chargeable day
+                    && !holidays.contains(current.toLocalDate())) { // and the current minute is not on a holiday
+                totalChargeableMinutes++; // increment the total chargeable minutes
+            }
+
+            // Move to the next minute
+            current = current.plusMinutes(1);
+        }
+
+        return totalChargeableMinutes;
+    }
+}
@@ -0,0 +1,131 @@
+package abn.parking.core.tariff;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChargeableMinutesCalculatorTests {
+
+    // a fixed seed, so that a failure can always be reproduced
+    private static final long SEED = 20240106L;
+
+    private static final List<ZoneId> ZONES = List.of(
+            ZoneId.of("UTC"), ZoneId.of("Europe/Amsterdam"), ZoneId.of("America/New_York"), ZoneId.of("Australia/Lord_Howe"));
+
+    @Test
+    void givenRandomSessionsAndSchedules_whenCalculate_thenSameAsBruteForce() {
+        var random = new Random(SEED);
+
+        for (var i = 0; i < 2_000; i++) {
+            var zone = ZONES.get(random.nextInt(ZONES.size()));
+            var startTime = randomTime(random);
+            var endTime = randomTime(random);
+
+            // sessions start anywhere between 2020 and 2026, with a random number of seconds and nanos
+            var startInstant = Instant.parse("2020-01-01T00:00:00Z")
+                    .plusSeconds(random.nextLong(Duration.ofDays(6 * 365).toSeconds()))
+                    .plusNanos(random.nextInt(1_000_000_000));
+            // most sessions are shorter than 3 days, but some of them are up to 40 days long
+            var maxDuration = random.nextInt(10) == 0 ? Duration.ofDays(40) : Duration.ofDays(3);
+            var endInstant = startInstant.plusNanos(random.nextLong(maxDuration.toNanos()));
+
+            assertSameAsBruteForce(startTime, endTime, zone, startInstant, endInstant);
+        }
+    }
+
+    @Test
+    void givenRandomChargeableDaysAndHolidays_whenCalculate_thenSameAsBruteForce() {
+        var random = new Random(SEED);
+
+        for (var i = 0; i < 1_000; i++) {
+            var zone = ZONES.get(random.nextInt(ZONES.size()));
+            var startTime = randomTime(random);
+            var endTime = randomTime(random);
+
+            var chargeableDays = EnumSet.noneOf(DayOfWeek.class);
+            for (var dayOfWeek : DayOfWeek.values()) {
+                if (random.nextBoolean()) {
+                    chargeableDays.add(dayOfWeek);
+                }
+            }
+
+            // the holidays are all in the same 60 days as the sessions, so that many sessions contain some of them
+            var firstDate = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365));
+            var holidays = new ArrayList<LocalDate>();
+            for (var j = random.nextInt(10); j > 0; j--) {
+                holidays.add(firstDate.plusDays(random.nextInt(60)));
+            }
+
+            var startInstant = firstDate.atStartOfDay(zone).toInstant()
+                    .plusSeconds(random.nextLong(Duration.ofDays(20).toSeconds()))
+                    .plusNanos(random.nextInt(1_000_000_000));
+            var endInstant = startInstant.plusNanos(random.nextLong(Duration.ofDays(40).toNanos()));
+
+            assertSameAsBruteForce(startTime, endTime, chargeableDays, holidays, zone, startInstant, endInstant);
+        }
+    }
+
+    @Test
+    void givenSessionsAcrossDaylightSavingTimeChanges_whenCalculate_thenSameAsBruteForce() {
+        var zone = ZoneId.of("Europe/Amsterdam");
+        var startTime = LocalTime.of(1, 30);
+        var endTime = LocalTime.of(21, 0);
+
+        // clocks are moved forward on 31 March 2024 and back on 27 October 2024
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-03-30T23:30:00Z"), Instant.parse("2024-03-31T03:30:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-03-29T10:00:00Z"), Instant.parse("2024-04-02T10:00:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-10-26T23:30:00Z"), Instant.parse("2024-10-27T03:30:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-10-25T10:00:00Z"), Instant.parse("2024-10-29T10:00:00Z"));
+    }
+
+    @Test
+    void givenSessionsOnTheBoundariesOfTheParkingPeriod_whenCalculate_thenSameAsBruteForce() {
+        var zone = ZoneId.of("UTC");
+        var startTime = LocalTime.of(8, 0);
+        var endTime = LocalTime.of(21, 0);
+
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-01-06T08:00:00Z"), Instant.parse("2024-01-06T21:00:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-01-06T07:59:59.9995Z"), Instant.parse("2024-01-06T08:01:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-01-06T07:59:59.999Z"), Instant.parse("2024-01-06T08:01:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-01-06T20:59:00.000001Z"), Instant.parse("2024-01-08T21:00:00Z"));
+        assertSameAsBruteForce(startTime, endTime, zone, Instant.parse("2024-01-06T21:00:00Z"), Instant.parse("2024-01-06T20:00:00Z"));
+        assertSameAsBruteForce(LocalTime.of(0, 0), endTime, zone, Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-01-03T00:00:00Z"));
+        assertSameAsBruteForce(endTime, startTime, zone, Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2024-01-03T00:00:00Z"));
+    }
+
+    private static void assertSameAsBruteForce(LocalTime startTime, LocalTime endTime, ZoneId zone, Instant startInstant, Instant endInstant) {
+        assertSameAsBruteForce(startTime, endTime, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), Set.of(), zone, startInstant, endInstant);
+    }
+
+    private static void assertSameAsBruteForce(LocalTime startTime, LocalTime endTime, Set<DayOfWeek> chargeableDays,
+                                               Collection<LocalDate> holidays, ZoneId zone, Instant startInstant, Instant endInstant) {
+        var startDateTime = LocalDateTime.ofInstant(startInstant, zone);
+        var endDateTime = LocalDateTime.ofInstant(endInstant, zone);
+
+        var expected = new BruteForceChargeableMinutesCalculator(startTime, endTime, chargeableDays, holidays)
+                .calculate(startDateTime, endDateTime);
+        var actual = new ChargeableMinutesCalculator(startTime, endTime, chargeableDays, holidays)
+                .calculate(startDateTime, endDateTime);
+
+        assertEquals(expected, actual, () -> "Schedule %s-%s on %s except %s in %s, session %s-%s"
+                .formatted(startTime, endTime, chargeableDays, holidays, zone, startInstant, endInstant));
+    }
+
+    private static LocalTime randomTime(Random random) {
+        return LocalTime.of(random.nextInt(24), random.nextInt(60));
+    }
+}
@@ -0,0 +1,73 @@
+package abn.parking.core.tariff;
+
+import abn.parking.core.configuration.ParkingScheduleProperties;
+import abn.parking.core.configuration.ParkingScheduleProperties.ScheduleTime;
+import abn.parking.core.configuration.ParkingScheduleProperties.StreetSchedule;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TariffCalendarTests {
+
+    // Saturday 6 January 2024 20:00:00 UTC -> Sunday 7 January 2024 10:00:00 UTC
+    private static final Instant START_INSTANT = Instant.parse("2024-01-06T20:00:00Z");
+    private static final Instant END_INSTANT = Instant.parse("2024-01-07T10:00:00Z");
+
+    @Test
+    void givenStreetWithoutOwnSchedule_whenCalculateChargeableMinutes_thenDefaultScheduleUsed() {
+        var calendar = TariffCalendar.compile(properties());
+
+        var chargeableMinutes = calendar.calculateChargeableMinutes("Europaplein", START_INSTANT, END_INSTANT);
+
+        assertEquals(60, chargeableMinutes);
+    }
+
+    @Test
+    void givenStreetWithOwnSchedule_whenCalculateChargeableMinutes_thenStreetScheduleUsed() {
+        var properties = properties();
+        properties.getStreets().put("Damrak", new StreetSchedule(null, new ScheduleTime(23, 0), EnumSet.allOf(DayOfWeek.class)));
+        var calendar = TariffCalendar.compile(properties);
+
+        var chargeableMinutes = calendar.calculateChargeableMinutes("Damrak", START_INSTANT, END_INSTANT);
+
+        // Saturday 20:00 - 23:00 and Sunday 8:00 - 10:00
+        assertEquals(300, chargeableMinutes);
+    }
+
+    @Test
+    void givenHoliday_whenCalculateChargeableMinutes_thenHolidayNotCharged() {
+        var properties = properties();
+        properties.setHolidays(List.of(LocalDate.of(2024, 1, 6)));
+        var calendar = TariffCalendar.compile(properties);
+
+        var chargeableMinutes = calendar.calculateChargeableMinutes("Europaplein", START_INSTANT, END_INSTANT);
+
+        assertEquals(0, chargeableMinutes);
+    }
+
+    @Test
+    void givenScheduleChanged_whenReload_thenNewCalendarSwappedInAndOldCalendarUnchanged() {
+        var properties = properties();
+        var holder = new TariffCalendarHolder(properties);
+        var calendar = holder.getCalendar();
+
+        properties.setHolidays(List.of(LocalDate.of(2024, 1, 6)));
+        holder.reload();
+
+        // a session which is being billed keeps the calendar it started with
+        assertEquals(60, calendar.calculateChargeableMinutes("Europaplein", START_INSTANT, END_INSTANT));
+        assertEquals(0, holder.getCalendar().calculateChargeableMinutes("Europaplein", START_INSTANT, END_INSTANT));
+    }
+
+    private static ParkingScheduleProperties properties() {
+        var properties = new ParkingScheduleProperties();
+        properties.setZoneId("UTC");
+        return properties;
+    }
+}
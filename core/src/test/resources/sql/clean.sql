@@ -1,6 +1,14 @@
 set REFERENTIAL_INTEGRITY false;
 truncate table parking_invoice;
 truncate table parking_session;
+truncate table parking_session_open;
+update parking_session_longest set duration_seconds = 0;
 truncate table vehicle_observation;
 truncate table parking_rate;
+truncate table verification_checkpoint;
+truncate table license_balance;
+truncate table vehicle_observation_archive;
+truncate table parking_session_archive;
+truncate table street_daily_rollup;
+update rollup_watermark set watermark_instant = null;
 set REFERENTIAL_INTEGRITY true;